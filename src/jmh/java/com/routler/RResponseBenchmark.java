@@ -0,0 +1,46 @@
+package com.routler;
+
+import com.svcline.models.LineItem;
+import com.svcline.models.State;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Serialization of item lists, as GET /items returns them, into a stream that discards the bytes.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+public class RResponseBenchmark {
+    private static final State[] STATES = State.values();
+
+    @Param({"1", "100", "1000"})
+    public int items;
+
+    private ArrayList<LineItem> lineItems;
+    private final OutputStream sink = OutputStream.nullOutputStream();
+
+    @Setup
+    public void setup() {
+        lineItems = new ArrayList<>(items);
+
+        for (int i = 0; i < items; i++) {
+            LineItem lineItem = new LineItem(String.format("ITEM-%08d", i), "100" + (i % 4 + 1), i % 4 == 0 ? null : "100" + (i % 4), STATES[i % STATES.length]);
+            lineItem.setVersion(i % 10);
+            lineItems.add(lineItem);
+        }
+    }
+
+    @Benchmark
+    public RResponse writeItems() throws IOException {
+        RResponse rResponse = new RResponse(lineItems);
+        rResponse.writeTo(sink);
+
+        return rResponse;
+    }
+}
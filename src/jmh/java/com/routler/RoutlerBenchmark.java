@@ -0,0 +1,180 @@
+package com.routler;
+
+import com.google.cloud.functions.HttpRequest;
+import com.google.cloud.functions.HttpResponse;
+import com.svcline.prodline.BenchmarkLines;
+import com.svcline.prodline.ProductionLine;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static java.net.HttpURLConnection.HTTP_OK;
+
+/* Path matching, through Routler.match alone and through Routler.handle as svcline calls it. The routes are the
+ * ones svcline registers plus a few more, with handlers that do nothing, so only the routing itself is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoutlerBenchmark {
+    private static final RResponse OK = new RResponse(HTTP_OK, "OK");
+
+    // Routes are static, registering them once per JVM
+    static {
+        Routler.register("/configurations/{configId}", new ConfigurationRoute());
+        Routler.register("/items/{itemId}", new ItemRoute());
+        Routler.register("/items:batch", new BatchRoute());
+        Routler.register("/metrics/{metricId}", new MetricsRoute());
+        Routler.register("/lines/{lineId}/items/{itemId}", new LineItemRoute());
+        Routler.register("/lines/{lineId}/stations/{stationId}", new LineStationRoute());
+    }
+
+    @Param({"/items/A1B2C3D4", "/items", "/configurations/test-1", "/items:batch", "/lines/line-1/items/A1B2C3D4", "/unknown/A1B2C3D4"})
+    public String path;
+
+    private HttpRequest request;
+    private ProductionLine productionLine;
+
+    @Setup
+    public void setup() throws Exception {
+        request = new Request("GET", path);
+        productionLine = BenchmarkLines.testLine();
+    }
+
+    @Benchmark
+    public RMatch match() {
+        return Routler.match(path);
+    }
+
+    @Benchmark
+    public RResponse handle() {
+        return Routler.handle(request, null, new RContext(productionLine));
+    }
+
+    private abstract static class NoopRoute implements Routeable {
+        @Override
+        public RResponse get(RContext context, HttpRequest request, HttpResponse response) {
+            return OK;
+        }
+
+        @Override
+        public RResponse put(RContext context, HttpRequest request, HttpResponse response) {
+            return OK;
+        }
+
+        @Override
+        public RResponse patch(RContext context, HttpRequest request, HttpResponse response) {
+            return OK;
+        }
+
+        @Override
+        public RResponse post(RContext context, HttpRequest request, HttpResponse response) {
+            return OK;
+        }
+
+        @Override
+        public RResponse delete(RContext context, HttpRequest request, HttpResponse response) {
+            return OK;
+        }
+    }
+
+    // Routler takes one handler class per route
+    private static class ConfigurationRoute extends NoopRoute {
+    }
+
+    private static class ItemRoute extends NoopRoute {
+    }
+
+    private static class BatchRoute extends NoopRoute {
+    }
+
+    private static class MetricsRoute extends NoopRoute {
+    }
+
+    private static class LineItemRoute extends NoopRoute {
+    }
+
+    private static class LineStationRoute extends NoopRoute {
+    }
+
+    // Only the method and path are used by the router.
+    private static class Request implements HttpRequest {
+        private final String method;
+        private final String path;
+
+        private Request(String method, String path) {
+            this.method = method;
+            this.path = path;
+        }
+
+        @Override
+        public String getMethod() {
+            return method;
+        }
+
+        @Override
+        public String getUri() {
+            return path;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public Optional<String> getQuery() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Map<String, List<String>> getQueryParameters() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Map<String, HttpPart> getParts() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Optional<String> getContentType() {
+            return Optional.empty();
+        }
+
+        @Override
+        public long getContentLength() {
+            return 0;
+        }
+
+        @Override
+        public Optional<String> getCharacterEncoding() {
+            return Optional.empty();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return InputStream.nullInputStream();
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new StringReader(""));
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaders() {
+            return Collections.emptyMap();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.svcline.models.clocker;
+
+import com.svcline.prodline.BenchmarkLines;
+import com.svcline.prodline.ProductLineConfiguration;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/* Clocking an item that passed many stations already. Both cases scan the whole times list: a stop at the last
+ * station the item started at, and a start at a station the item has not been at. The timing added is removed
+ * again within the benchmark, which costs next to nothing compared to the scan.
+ * Building the clocker of such an item from its timings, one addTime at a time or at once through the timeline of
+ * addTimes, as the event store does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClockerBenchmark {
+    private static final String NEW_STATION_ID = "NEW";
+
+    @Param({"8", "64", "512"})
+    public int stations;
+
+    private ProductLineConfiguration plc;
+    private Clocker clocker;
+    private String lastStationId;
+    private List<StationTiming> timings;
+
+    @Setup
+    public void setup() throws IOException {
+        plc = BenchmarkLines.lineOf(stations);
+        clocker = new Clocker("item", plc, true);
+
+        for (int i = 0; i < stations; i++) {
+            clocker.addTime(BenchmarkLines.stationId(i), Operation.START);
+            if (i < stations - 1)
+                clocker.addTime(BenchmarkLines.stationId(i), Operation.STOP);
+        }
+
+        lastStationId = BenchmarkLines.stationId(stations - 1);
+
+        timings = new ArrayList<>();
+        for (Times times : clocker.getTimesList()) {
+            for (Timing timing : times.getTimingList()) {
+                timings.add(new StationTiming(times.getStationId(), timing.getOperation(), timing.getTimestamp()));
+            }
+        }
+    }
+
+    @Benchmark
+    public Clocker addStopAtLastStation() {
+        clocker.addTime(lastStationId, Operation.STOP);
+        clocker.getTimesList().get(stations - 1).getTimingList().remove(1);
+
+        return clocker;
+    }
+
+    @Benchmark
+    public Clocker addStartAtNewStation() {
+        clocker.addTime(NEW_STATION_ID, Operation.START);
+        clocker.getTimesList().remove(stations);
+
+        return clocker;
+    }
+
+    @Benchmark
+    public Clocker addTimingsOneByOne() {
+        Clocker built = new Clocker("item", plc, true);
+        for (StationTiming timing : timings) {
+            built.addTime(timing.getStationId(), timing.getOperation(), timing.getTimestamp());
+        }
+
+        return built;
+    }
+
+    @Benchmark
+    public Clocker addTimingsAtOnce() {
+        Clocker built = new Clocker("item", plc, true);
+        built.addTimes(timings);
+
+        return built;
+    }
+}
@@ -0,0 +1,64 @@
+package com.svcline.models.clocker.bq;
+
+import com.google.cloud.Timestamp;
+import com.svcline.models.clocker.Clocker;
+import com.svcline.models.clocker.Operation;
+import com.svcline.models.clocker.Times;
+import com.svcline.models.clocker.Timing;
+import com.svcline.prodline.BenchmarkLines;
+import com.svcline.prodline.ProductLineConfiguration;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+// The calculations BigQueryService runs for every finished item, over items that passed all stations of a line.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BqEntryBenchmark {
+    @Param({"4", "32", "256"})
+    public int stations;
+
+    private Clocker clocker;
+    private BqEntry bqEntry;
+
+    @Setup
+    public void setup() throws IOException {
+        ProductLineConfiguration plc = BenchmarkLines.lineOf(stations);
+        clocker = new Clocker("item", plc, true);
+
+        // Every station takes a second and a half, with half a second between stations
+        long micros = 1_650_000_000_000_000L;
+        for (int i = 0; i < stations; i++) {
+            ArrayList<Timing> timings = new ArrayList<>();
+            timings.add(new Timing(Operation.START, Timestamp.ofTimeMicroseconds(micros)));
+            timings.add(new Timing(Operation.STOP, Timestamp.ofTimeMicroseconds(micros + 1_500_000)));
+            clocker.getTimesList().add(new Times(BenchmarkLines.stationId(i), timings));
+            micros += 2_000_000;
+        }
+
+        bqEntry = BqEntry.from(clocker);
+        bqEntry.setEstimatedItemProductionTime(plc.getEstimatedItemProductionTime());
+    }
+
+    @Benchmark
+    public BqEntry calculateItemProductionTime() {
+        bqEntry.calculateItemProductionTime();
+
+        return bqEntry;
+    }
+
+    // On a new entry every time, as BigQueryService does for every item.
+    @Benchmark
+    public BqEntry calculateStationTimes() {
+        BqEntry entry = BqEntry.from(clocker);
+        entry.calculateStationTimes();
+
+        return entry;
+    }
+}
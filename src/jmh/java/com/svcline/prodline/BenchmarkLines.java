@@ -0,0 +1,59 @@
+package com.svcline.prodline;
+
+import com.svcline.models.Action;
+import com.svcline.models.Props;
+import com.svcline.models.State;
+import com.svcline.models.Station;
+import com.svcline.models.StationType;
+import com.svcline.store.Stores;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Production lines for the benchmarks, all of them in memory.
+public class BenchmarkLines {
+    private BenchmarkLines() {
+    }
+
+    // The test configuration, on in-memory stores.
+    public static ProductionLine testLine() throws IOException, InstantiationException {
+        Props props = new Props();
+        props.setStorage(Props.STORAGE_MEMORY);
+
+        Stores stores = Stores.from(props);
+        ProductLineConfiguration plc = new ProductLineConfiguration(stores.getConfigurationStore());
+        plc.loadTestConfiguration();
+
+        ProductionLine productionLine = new ProductionLine(stores);
+        productionLine.init(plc, props);
+
+        return productionLine;
+    }
+
+    // A line of the given number of stations, "S0" the start and the last one the end, plus a service station.
+    public static ProductLineConfiguration lineOf(int stations) throws IOException {
+        ProductLineConfiguration plc = new ProductLineConfiguration(null);
+        List<Action> actions = List.of(new Action("Next", State.PASSED), new Action("Failed", State.FAILED));
+
+        for (int i = 0; i < stations; i++) {
+            StationType stationType = i == 0 ? StationType.START : i == stations - 1 ? StationType.END : StationType.PRODUCTION;
+            plc.getConfiguredStationMap().addStation(new Station(stationId(i), "Station " + i, stationType, new ArrayList<>(actions), 1.0 + i));
+
+            if (i > 0)
+                plc.getConfiguredStationOrder().addStationTransition(stationId(i - 1), stationId(i));
+        }
+
+        plc.getConfiguredStationMap().addStation(new Station("SERVICE", "Service Station", StationType.SERVICE,
+                                                             new ArrayList<>(List.of(new Action("Next", State.PASSED),
+                                                                                     new Action("Retry", State.RETRIED),
+                                                                                     new Action("Scrap item", State.SCRAPED))), 5.0));
+        plc.setEstimatedItemProductionTime(stations * 2.0);
+
+        return plc;
+    }
+
+    public static String stationId(int i) {
+        return "S" + i;
+    }
+}
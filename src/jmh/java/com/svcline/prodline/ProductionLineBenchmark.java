@@ -0,0 +1,131 @@
+package com.svcline.prodline;
+
+import com.svcline.models.LineItem;
+import com.svcline.models.State;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/* Transitions through the test line, one scenario per state an item can move into or start from.
+ * Every scenario is run once at setup, so a scenario the line rejects fails the run instead of measuring the
+ * rejection. Rejections are measured on their own, since they throw.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductionLineBenchmark {
+    @org.openjdk.jmh.annotations.State(Scope.Benchmark)
+    public static class Line {
+        ProductionLine productionLine;
+        LineItem finishedItem = new LineItem("item", "1004", "1003", State.FINISHED);
+        LineItem returningItem = new LineItem("item", "1004", null, State.PASSED);
+
+        @Setup
+        public void setup() throws IOException, InstantiationException {
+            productionLine = BenchmarkLines.testLine();
+        }
+    }
+
+    // Station stops, named after the state the item moves into.
+    @org.openjdk.jmh.annotations.State(Scope.Benchmark)
+    public static class Stop {
+        @Param({"PASSED", "FINISHED", "FAILED", "RETRIED", "SCRAPED", "SERVICE_PASSED"})
+        public String scenario;
+
+        LineItem actualItem;
+        LineItem lineItemIn;
+
+        @Setup
+        public void setup(Line line) throws InstantiationException {
+            switch (scenario) {
+                case "PASSED":
+                    actualItem = new LineItem("item", "1002", "1001", State.STARTED);
+                    lineItemIn = new LineItem("item", "1002", null, State.PASSED);
+                    break;
+                case "FINISHED":
+                    actualItem = new LineItem("item", "1004", "1003", State.STARTED);
+                    lineItemIn = new LineItem("item", "1004", null, State.PASSED);
+                    break;
+                case "FAILED":
+                    actualItem = new LineItem("item", "1001", null, State.CREATED);
+                    lineItemIn = new LineItem("item", "1001", null, State.FAILED);
+                    break;
+                case "RETRIED":
+                    actualItem = new LineItem("item", "2001", "1002", State.FAILED);
+                    lineItemIn = new LineItem("item", "2001", null, State.RETRIED);
+                    break;
+                case "SCRAPED":
+                    actualItem = new LineItem("item", "2001", "1002", State.FAILED);
+                    lineItemIn = new LineItem("item", "2001", null, State.SCRAPED);
+                    break;
+                case "SERVICE_PASSED":
+                    actualItem = new LineItem("item", "2001", "1002", State.FAILED);
+                    lineItemIn = new LineItem("item", "2001", null, State.PASSED);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown scenario " + scenario);
+            }
+
+            line.productionLine.toNextStation(actualItem, lineItemIn);
+        }
+    }
+
+    // Station starts, named after the state the item starts from.
+    @org.openjdk.jmh.annotations.State(Scope.Benchmark)
+    public static class Start {
+        @Param({"CREATED", "PASSED", "RETRIED", "FAILED"})
+        public String scenario;
+
+        LineItem actualItem;
+        LineItem lineItemIn;
+
+        @Setup
+        public void setup(Line line) throws InstantiationException {
+            switch (scenario) {
+                case "CREATED":
+                    actualItem = new LineItem("item", "1001", null, State.CREATED);
+                    lineItemIn = new LineItem("item", "1001", null, State.PASSED);
+                    break;
+                case "PASSED":
+                    actualItem = new LineItem("item", "1001", null, State.PASSED);
+                    lineItemIn = new LineItem("item", "1002", null, State.PASSED);
+                    break;
+                case "RETRIED":
+                    actualItem = new LineItem("item", "1001", "2001", State.RETRIED);
+                    lineItemIn = new LineItem("item", "1002", null, State.PASSED);
+                    break;
+                case "FAILED":
+                    actualItem = new LineItem("item", "2001", "1001", State.FAILED);
+                    lineItemIn = new LineItem("item", "2001", null, State.PASSED);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown scenario " + scenario);
+            }
+
+            line.productionLine.fromStation(actualItem, lineItemIn);
+        }
+    }
+
+    @Benchmark
+    public LineItem toNextStation(Line line, Stop stop) throws InstantiationException {
+        return line.productionLine.toNextStation(stop.actualItem, stop.lineItemIn);
+    }
+
+    @Benchmark
+    public LineItem fromStation(Line line, Start start) throws InstantiationException {
+        return line.productionLine.fromStation(start.actualItem, start.lineItemIn);
+    }
+
+    // A finished item coming back to the line, rejected with an IllegalStateException.
+    @Benchmark
+    public Object rejected(Line line) throws InstantiationException {
+        try {
+            return line.productionLine.fromStation(line.finishedItem, line.returningItem);
+        } catch (IllegalStateException e) {
+            return e;
+        }
+    }
+}
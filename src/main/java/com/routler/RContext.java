@@ -1,19 +1,75 @@
 package com.routler;
 
+import com.svcline.prodline.LineRegistry;
 import com.svcline.prodline.ProductionLine;
+import com.svcline.store.ClockerStore;
+import com.svcline.store.ConfigurationStore;
+import com.svcline.store.LineItemStore;
 
+// Request scoped state. A new context is created for every request and handed to the handler together with the
+// request, so handlers and stores can stay stateless and be shared between concurrent requests.
 public class RContext {
-    private ProductionLine productionLine;
+    private final ProductionLine productionLine;
+    private final LineItemStore lineItemStore;
+    private final ClockerStore clockerStore;
+    private final ConfigurationStore configurationStore;
+    private final LineRegistry lineRegistry;
+    private RMatch match;
 
     public RContext(ProductionLine productionLine) {
+        this(productionLine, null);
+    }
+
+    public RContext(ProductionLine productionLine, LineRegistry lineRegistry) {
         this.productionLine = productionLine;
+        this.lineRegistry = lineRegistry;
+        this.lineItemStore = productionLine.getStores().getLineItemStore();
+        this.clockerStore = productionLine.getStores().getClockerStore();
+        this.configurationStore = productionLine.getStores().getConfigurationStore();
     }
 
     public ProductionLine getProductionLine() {
         return productionLine;
     }
 
-    public void setProductionLine(ProductionLine productionLine) {
-        this.productionLine = productionLine;
+    // The same request on another line, with the path matched already.
+    public RContext forLine(ProductionLine productionLine) {
+        RContext context = new RContext(productionLine, lineRegistry);
+        context.match = match;
+
+        return context;
+    }
+
+    // Null if the instance serves its default line only.
+    public LineRegistry getLineRegistry() {
+        return lineRegistry;
+    }
+
+    public LineItemStore getLineItemStore() {
+        return lineItemStore;
+    }
+
+    public ClockerStore getClockerStore() {
+        return clockerStore;
+    }
+
+    public ConfigurationStore getConfigurationStore() {
+        return configurationStore;
+    }
+
+    public RMatch getMatch() {
+        return match;
+    }
+
+    void setMatch(RMatch match) {
+        this.match = match;
+    }
+
+    public String getPathVal(String pathVar) {
+        return match != null ? match.getPathVal(pathVar) : null;
+    }
+
+    public boolean isNaked() {
+        return match == null || match.isNaked();
     }
 }
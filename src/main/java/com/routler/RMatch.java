@@ -0,0 +1,72 @@
+package com.routler;
+
+// The result of matching an invoked path against the registered routes. It is created per request and
+// only keeps the path and the matched route; path values are cut out of the path when asked for.
+public class RMatch {
+    private final Route route;
+    private final String path;
+
+    RMatch(Route route, String path) {
+        this.route = route;
+        this.path = path;
+    }
+
+    public Route getRoute() {
+        return route;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getPathVal(String pathVar) {
+        if (pathVar == null)
+            return null;
+
+        int ix = route.indexOfPathVar(pathVar);
+        if (ix == -1)
+            return null;
+
+        // Values sit at every second segment, after their SubPath
+        int segment = 2 * ix + 1;
+        int start = 1;
+        for (int i = 0; i < segment; i++) {
+            start = path.indexOf('/', start);
+            if (start == -1)
+                return null;
+            start++;
+        }
+
+        int end = path.indexOf('/', start);
+        if (end == -1)
+            end = path.length();
+
+        return end > start ? path.substring(start, end) : null;
+    }
+
+    public boolean isNaked() {
+        int start = 1;
+        int segment = 0;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if (end == -1)
+                end = path.length();
+
+            if (segment % 2 == 1 && end > start && route.isPathVar(segment / 2))
+                return false;
+
+            start = end + 1;
+            segment++;
+        }
+
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "RMatch{" +
+               "route=" + route +
+               ", path='" + path + '\'' +
+               '}';
+    }
+}
@@ -1,31 +1,41 @@
 package com.routler;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonNull;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 import static java.net.HttpURLConnection.HTTP_CREATED;
 import static java.net.HttpURLConnection.HTTP_OK;
 
+// The payload is kept as is and only serialized when the response is written, straight into the output stream.
 public class RResponse {
+    private static final Gson gson = new Gson();
+
     private int code;
     private String message;
-    private String json;
+    private Object obj;
+    private String json;    // Only set if the payload was given as ready-made JSON
+    private String contentType;     // Null means the default JSON content type
 
     public RResponse() {
 
     }
 
     public RResponse(int code, Object obj) {
-        Gson gson = new Gson();
-
         this.code = code;
-        this.json = gson.toJson(obj);
+        this.obj = obj;
     }
 
     public RResponse(Object obj) {
-        Gson gson = new Gson();
-
         this.code = HTTP_OK;
-        this.json = gson.toJson(obj);
+        this.obj = obj;
     }
 
     public int getCode() {
@@ -44,8 +54,21 @@ public class RResponse {
         this.message = message;
     }
 
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public Object getObj() {
+        return obj;
+    }
+
+    // Serializes the payload to a String. Use writeTo when sending the response.
     public String getJson() {
-        return json;
+        return json != null ? json : gson.toJson(obj);
     }
 
     public boolean succeeded() {
@@ -56,11 +79,28 @@ public class RResponse {
         this.json = json;
     }
 
+    public void writeTo(OutputStream os) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+
+        if (json != null) {
+            writer.write(json);
+        } else {
+            JsonWriter jsonWriter = gson.newJsonWriter(writer);
+            if (obj != null)
+                gson.toJson(obj, obj.getClass(), jsonWriter);
+            else
+                gson.toJson(JsonNull.INSTANCE, jsonWriter);
+        }
+
+        // Flush, not close. The stream belongs to the HttpResponse.
+        writer.flush();
+    }
+
     @Override
     public String toString() {
         return "LineResponse{" +
                "code=" + code +
-               ", json='" + json + '\'' +
+               ", json='" + getJson() + '\'' +
                '}';
     }
 }
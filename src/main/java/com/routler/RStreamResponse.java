@@ -0,0 +1,39 @@
+package com.routler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// A response whose body is produced while it is written, e.g. from a database query stream,
+// so that the payload never has to be held in memory as a whole.
+public class RStreamResponse extends RResponse {
+    private final BodyWriter bodyWriter;
+
+    public interface BodyWriter {
+        void writeTo(OutputStream os) throws IOException;
+    }
+
+    public RStreamResponse(int code, String contentType, BodyWriter bodyWriter) {
+        super(code, null);
+        this.bodyWriter = bodyWriter;
+        setContentType(contentType);
+    }
+
+    @Override
+    public String getJson() {
+        return null;
+    }
+
+    @Override
+    public void writeTo(OutputStream os) throws IOException {
+        bodyWriter.writeTo(os);
+        os.flush();
+    }
+
+    @Override
+    public String toString() {
+        return "RStreamResponse{" +
+               "code=" + getCode() +
+               ", contentType='" + getContentType() + '\'' +
+               '}';
+    }
+}
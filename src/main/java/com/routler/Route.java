@@ -4,18 +4,18 @@ import com.google.cloud.functions.HttpRequest;
 import com.google.cloud.functions.HttpResponse;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 
 public class Route {
     private final ArrayList<Pair> routePairList;
     private final String route;
     private final Routeable handler;
-    private HashMap<String, String> vMap = null;    // Null and set only if configured and called route match
+    private final String[] pathVars;    // Registered SubPathVal per pair, null where the pair has none
 
     public Route(String route, Routeable handler) {
         this.route = route;
         this.handler = handler;
         this.routePairList = mapRoutePairs(route);
+        this.pathVars = mapPathVars(this.routePairList);
     }
 
     private ArrayList<Pair> mapRoutePairs(String route) {
@@ -41,83 +41,90 @@ public class Route {
         return pairs;
     }
 
-    public RResponse execute(Route route, HttpRequest request, HttpResponse response, RContext RContext) {
-        handler.setContext(RContext);
+    private String[] mapPathVars(ArrayList<Pair> pairs) {
+        if (pairs == null)
+            return new String[0];
+
+        String[] vars = new String[pairs.size()];
+        for (int i = 0; i < pairs.size(); i++) {
+            String v = pairs.get(i).getV();
+            vars[i] = v.isEmpty() ? null : v;
+        }
+
+        return vars;
+    }
+
+    // Adds this route to the trie. Every SubPath gets a value node below it, accepting any SubPathVal,
+    // and the route is reachable both with and without its last value, e.g. /items and /items/{itemId}.
+    // Returns false if another route already ends at the same place.
+    boolean compileInto(RouteNode root) {
+        if (routePairList == null || routePairList.isEmpty())
+            return false;
+
+        RouteNode node = root;
+        RouteNode keyNode = null;
+        for (Pair pair : routePairList) {
+            keyNode = node.literal(pair.getK());
+            node = keyNode.value();
+        }
+
+        if (keyNode.getRoute() != null || node.getRoute() != null)
+            return false;
+
+        keyNode.setRoute(this);
+        node.setRoute(this);
+
+        return true;
+    }
 
+    public RResponse execute(RContext context, HttpRequest request, HttpResponse response) {
         switch (request.getMethod()) {
             case "GET":
-                return handler.get(route, request, response);
+                return handler.get(context, request, response);
 
             case "PUT":
-                return handler.put(route, request, response);
+                return handler.put(context, request, response);
 
             case "PATCH":
-                return handler.patch(route, request, response);
+                return handler.patch(context, request, response);
 
             case "POST":
-                return handler.post(route, request, response);
+                return handler.post(context, request, response);
 
             case "DELETE":
-                return handler.delete(route, request, response);
+                return handler.delete(context, request, response);
 
             default:
                 return null;
         }
     }
 
-    public String getPathVal(String pathVar) {
-        return (pathVar == null || this.vMap == null) ? null : this.vMap.get(pathVar);
-    }
-
-    // Checks whether a registered route equals an invoked route path.
-    // If equal the invoked path's variables will be mapped to the
-    // registered route's path parameters so that they can be retrieved
-    // via @getPathVal.
-    public boolean equalsTo(String routeStr) {
-        this.vMap = new HashMap<>();
-        ArrayList<Pair> pairs = mapRoutePairs(routeStr);
-
-        if (pairs == null)
-            return false;
-
-        if (this.routePairList.size() != pairs.size())
-            return false;
-        else if (pairs.size() == 0)
-            return true;
-
-        int i = 0;
-        int match = 0;
-        for (; i < pairs.size(); i++) {
-            Pair regPair = this.routePairList.get(i);
-            Pair inPair = pairs.get(i);
-
-            if (inPair.getK().equalsIgnoreCase(regPair.getK())) {
-                match++;
-
-                //
-                if (!regPair.getV().isEmpty() && !inPair.getV().isEmpty())
-                    this.vMap.put(regPair.getV(), inPair.getV());
-            }
+    int indexOfPathVar(String pathVar) {
+        for (int i = 0; i < pathVars.length; i++) {
+            if (pathVar.equals(pathVars[i]))
+                return i;
         }
 
-        if (i != match)
-            this.vMap = null;
-
-        return i == match;
+        return -1;
     }
 
-    public String getRouteValue(String vPath) {
-        if (vPath == null || vPath.isEmpty() || vPath.isBlank() || this.vMap == null)
-            return null;
-
-        return this.vMap.get(vPath);
+    boolean isPathVar(int pairIx) {
+        return pairIx < pathVars.length && pathVars[pairIx] != null;
     }
 
-    public boolean isNaked() {
-        return this.vMap == null || this.vMap.size() == 0;
+    public String getRoute() {
+        return route;
     }
 
     public Routeable getHandler() {
         return this.handler;
     }
+
+    @Override
+    public String toString() {
+        return "Route{" +
+               "route='" + route + '\'' +
+               ", handler=" + handler.getClass().getSimpleName() +
+               '}';
+    }
 }
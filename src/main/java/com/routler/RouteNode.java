@@ -0,0 +1,61 @@
+package com.routler;
+
+// A node in the compiled route trie. Routes follow the Pair layout, /{SubPath/:SubPathVal:}/..., so the trie
+// alternates between literal SubPath nodes (matched case-insensitively) and value nodes that accept any segment.
+// Which name a value carries is kept by the Route itself, since several routes may share the same value node.
+class RouteNode {
+    private static final RouteNode[] NO_CHILDREN = new RouteNode[0];
+
+    private final String segment;                   // Literal SubPath, null for the root and value nodes
+    private RouteNode[] literals = NO_CHILDREN;     // Arrays over maps so lookups can compare path regions in place
+    private RouteNode value;
+    private Route route;                            // Set if a registered route ends at this node
+
+    RouteNode(String segment) {
+        this.segment = segment;
+    }
+
+    RouteNode literal(String segment) {
+        for (RouteNode child : literals) {
+            if (child.segment.equalsIgnoreCase(segment))
+                return child;
+        }
+
+        RouteNode[] grown = new RouteNode[literals.length + 1];
+        System.arraycopy(literals, 0, grown, 0, literals.length);
+        grown[literals.length] = new RouteNode(segment);
+        literals = grown;
+
+        return grown[literals.length - 1];
+    }
+
+    RouteNode value() {
+        if (value == null)
+            value = new RouteNode(null);
+
+        return value;
+    }
+
+    // Looks up the literal child matching path[start, end) without creating a substring.
+    RouteNode findLiteral(String path, int start, int end) {
+        int length = end - start;
+        for (RouteNode child : literals) {
+            if (child.segment.length() == length && child.segment.regionMatches(true, 0, path, start, length))
+                return child;
+        }
+
+        return null;
+    }
+
+    RouteNode getValue() {
+        return value;
+    }
+
+    Route getRoute() {
+        return route;
+    }
+
+    void setRoute(Route route) {
+        this.route = route;
+    }
+}
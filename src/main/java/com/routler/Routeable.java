@@ -3,16 +3,15 @@ package com.routler;
 import com.google.cloud.functions.HttpRequest;
 import com.google.cloud.functions.HttpResponse;
 
+// Handlers are registered once and shared by all requests. Anything request specific must come from the context.
 public interface Routeable {
-    void setContext(RContext RContext);
+    RResponse get(RContext context, HttpRequest request, HttpResponse response);
 
-    RResponse get(Route route, HttpRequest request, HttpResponse response);
+    RResponse put(RContext context, HttpRequest request, HttpResponse response);
 
-    RResponse put(Route route, HttpRequest request, HttpResponse response);
+    RResponse patch(RContext context, HttpRequest request, HttpResponse response);
 
-    RResponse patch(Route route, HttpRequest request, HttpResponse response);
+    RResponse post(RContext context, HttpRequest request, HttpResponse response);
 
-    RResponse post(Route route, HttpRequest request, HttpResponse response);
-
-    RResponse delete(Route route, HttpRequest request, HttpResponse response);
+    RResponse delete(RContext context, HttpRequest request, HttpResponse response);
 }
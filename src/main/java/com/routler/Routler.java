@@ -2,7 +2,6 @@ package com.routler;
 
 import com.google.cloud.functions.HttpRequest;
 import com.google.cloud.functions.HttpResponse;
-import com.svcline.models.clocker.bq.BigQueryService;
 
 import java.util.logging.Logger;
 import java.util.ArrayList;
@@ -13,6 +12,7 @@ import static java.net.HttpURLConnection.HTTP_NOT_IMPLEMENTED;
 public class Routler {
     private static final Logger logger = Logger.getLogger(Routler.class.getName());
     private static final ArrayList<Route> routes = new ArrayList<>();
+    private static final RouteNode root = new RouteNode(null);    // Routes compiled at registration, see Route.compileInto
 
     public Routler() {
     }
@@ -20,13 +20,16 @@ public class Routler {
     public static void register(String path, Routeable handler) {
         if (path == null || handler == null)
             throw new RuntimeException("Input parameter cannot be null");
-        else if (routeExists(path))
-            throw new RuntimeException("Route already registered for path: " + path);
         else if (handlerExists(handler))
             throw new RuntimeException("Handler already registered for path: " + path);
 
         Route route = new Route(path, handler);
 
+        if (!route.compileInto(root)) {
+            logger.info("Route already exists, failed to register!!!");
+            throw new RuntimeException("Route already registered for path: " + path);
+        }
+
         routes.add(route);
     }
 
@@ -41,20 +44,6 @@ public class Routler {
         return false;
     }
 
-    private static boolean routeExists(String path) {
-        if (routes.size() == 0)
-            return false;
-
-        for (Route route : routes) {
-            if (route.equalsTo(path)) {
-                logger.info("Route already exists, failed to register!!!");
-                return true;
-            }
-        }
-
-        return false;
-    }
-
     @SuppressWarnings("unused")
     public static void listRoutes() {
         logger.info("Registered routes:");
@@ -64,12 +53,54 @@ public class Routler {
         logger.info("\n");
     }
 
-    public static RResponse handle(HttpRequest request, HttpResponse response, RContext RContext) {
-        for (Route route : routes) {
-            // If we've found our route, and it can be executed. Execute!
-            if (route.equalsTo(request.getPath())) {
-                return route.execute(route, request, response, RContext);
-            }
+    // Walks the route trie in a single scan over the path. Segments are compared in place, so nothing
+    // is allocated unless a route is found, in which case the per-request match is returned.
+    public static RMatch match(String path) {
+        if (path == null || path.length() < 2 || path.charAt(0) != '/')
+            return null;
+
+        RouteNode node = root;
+        int start = 1;
+        boolean key = true;     // Segments alternate between SubPath and SubPathVal
+        while (true) {
+            int end = path.indexOf('/', start);
+            if (end == -1)
+                end = path.length();
+
+            node = key ? node.findLiteral(path, start, end) : node.getValue();
+            if (node == null)
+                return null;
+
+            if (end == path.length())
+                break;
+
+            start = end + 1;
+            key = !key;
+
+            // Trailing slashes after a value end the path, "/items/abc/" is "/items/abc"
+            if (key && onlySlashesFrom(path, start))
+                break;
+        }
+
+        return node.getRoute() != null ? new RMatch(node.getRoute(), path) : null;
+    }
+
+    private static boolean onlySlashesFrom(String path, int start) {
+        for (int i = start; i < path.length(); i++) {
+            if (path.charAt(i) != '/')
+                return false;
+        }
+
+        return true;
+    }
+
+    public static RResponse handle(HttpRequest request, HttpResponse response, RContext context) {
+        RMatch match = match(request.getPath());
+
+        // If we've found our route, and it can be executed. Execute!
+        if (match != null) {
+            context.setMatch(match);
+            return match.getRoute().execute(context, request, response);
         }
 
         return new RResponse(HTTP_NOT_IMPLEMENTED, new RError("method '" + request.getMethod() + "' not implemented."));
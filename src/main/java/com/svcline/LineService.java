@@ -1,39 +1,78 @@
 package com.svcline;
 
-import com.svcline.handlers.db.DbLineFacacde;
+import com.google.gson.Gson;
+import com.routler.RContext;
+import com.routler.RStreamResponse;
 import com.routler.RError;
 import com.svcline.models.LineItem;
+import com.svcline.models.LineItemPage;
 import com.routler.RResponse;
 import com.svcline.models.State;
+import com.svcline.models.clocker.ClockerQueue;
 import com.svcline.models.clocker.ClockerService;
 import com.svcline.models.clocker.Operation;
+import com.svcline.prodline.BatchTransition;
 import com.svcline.prodline.ProductionLine;
 import com.svcline.prodline.Transition;
-
+import com.svcline.prodline.TransitionResult;
+import com.svcline.store.ClockerStore;
+import com.svcline.store.LineItemStore;
+import com.svcline.store.StoreConflictException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
+import static com.svcline.store.StoreFutures.unwrap;
 import static java.net.HttpURLConnection.*;
 
 public class LineService {
+    public static final String CONTENT_TYPE_NDJSON = "application/x-ndjson;charset=utf-8";
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    private static final String CLOCKING_BEHIND = "Clocking is behind, try again later.";
+    private static final Gson gson = new Gson();
+
     private final ProductionLine productionLine;
+    private final LineItemStore lineItemStore;
     private final ClockerService clockerService;
 
+    public LineService(RContext context) {
+        this(context.getProductionLine(), context.getLineItemStore(), context.getClockerStore());
+    }
+
     public LineService(ProductionLine prodLine) {
-        productionLine = prodLine;
-        clockerService = new ClockerService(this.productionLine);
+        this(prodLine, prodLine.getStores().getLineItemStore(), prodLine.getStores().getClockerStore());
     }
 
-    public RResponse stationItemStart(Transition transition) throws ExecutionException, InterruptedException {
+    public LineService(ProductionLine prodLine, LineItemStore lineItemStore, ClockerStore clockerStore) {
+        this.productionLine = prodLine;
+        this.lineItemStore = lineItemStore;
+        this.clockerService = new ClockerService(prodLine, clockerStore);
+    }
+
+    public CompletableFuture<RResponse> stationItemStart(Transition transition) {
         if (!transition.validate())
-            return new RResponse(HTTP_BAD_REQUEST, new RError("Line validation error for station start: " + transition));
+            return completed(new RResponse(HTTP_BAD_REQUEST, new RError("Line validation error for station start: " + transition)));
 
-        RResponse rResponse;
         String itemId = transition.getId();
+        ClockerQueue.Ticket ticket = reserveClocking(1);
+        if (ticket == null)
+            return completed(new RResponse(HTTP_UNAVAILABLE, new RError(CLOCKING_BEHIND)));
 
-        try {
-            DbLineFacacde dbLineFacacde = new DbLineFacacde(productionLine.getFirestore(), productionLine.getProps().isLiveEnv());
-            LineItem actualItemDb = dbLineFacacde.getFor(itemId);
+        return retryOnConflict(() -> lineItemStore.getFor(itemId).thenCompose(actualItemDb -> {
             LineItem lineItemIn = new LineItem(transition);
 
             /* Basic checks must be performed before we advance to the next station, those being:
@@ -43,52 +82,41 @@ public class LineService {
              */
 
             if (actualItemDb == null) { // Check and validate the original item
-                rResponse = new RResponse(HTTP_NOT_FOUND,
-                                          new RError("Original item not found for id " + itemId + "."));
+                return completed(new RResponse(HTTP_NOT_FOUND,
+                                               new RError("Original item not found for id " + itemId + ".")));
             } else if (actualItemDb.isDone()) {
-                rResponse = new RResponse(HTTP_CONFLICT,
-                                          new RError("Cannot produce an item twice."));
+                return completed(new RResponse(HTTP_CONFLICT,
+                                               new RError("Cannot produce an item twice.")));
             } else if (!lineItemIn.validate()) { // Check and validate the "new" item
-                rResponse = new RResponse(HTTP_BAD_REQUEST,
-                                          new RError("Failed to validate item for id " + itemId + ". Check arguments."));
+                return completed(new RResponse(HTTP_BAD_REQUEST,
+                                               new RError("Failed to validate item for id " + itemId + ". Check arguments.")));
             } else if (!lineItemIn.getId().equalsIgnoreCase(itemId)) { // Check and validate the "new" item
-                rResponse = new RResponse(HTTP_CONFLICT,
-                                          new RError("Body ID not matching path ID. Check arguments."));
-            } else {
-                // Item must exist and not be in START
-                clockItemStartTime(transition);
-
-                // We handle the line transition in the production line
-                LineItem verifiedItem = productionLine.fromStation(actualItemDb, lineItemIn);
-
-                dbLineFacacde.set(verifiedItem);
-
-                rResponse = new RResponse(verifiedItem);
+                return completed(new RResponse(HTTP_CONFLICT,
+                                               new RError("Body ID not matching path ID. Check arguments.")));
             }
-        } catch (IllegalStateException e) {
-            e.printStackTrace();
-            rResponse = new RResponse(HTTP_CONFLICT, new RError(e.getMessage()));
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-            rResponse = new RResponse(HTTP_UNAVAILABLE, new RError(e.getMessage()));
-        } catch (ExecutionException | InterruptedException e) {
-            e.printStackTrace();
-            rResponse = new RResponse(HTTP_INTERNAL_ERROR, new RError(e.getMessage()));
-        }
 
-        return rResponse;
+            // We handle the line transition in the production line, then store the item if nobody moved it meanwhile
+            LineItem verifiedItem = fromStation(actualItemDb, lineItemIn);
+            verifiedItem.writeOver(actualItemDb);
+
+            return lineItemStore.update(verifiedItem).thenApply(written -> {
+                productionLine.getWorkInProgress().moved(actualItemDb, written);
+                clockItemStartTime(ticket, transition);
+                return new RResponse(written);
+            });
+        })).whenComplete((rResponse, t) -> ticket.release()).exceptionally(LineService::errorResponse);
     }
 
-    public RResponse stationItemStop(Transition transition) {
+    public CompletableFuture<RResponse> stationItemStop(Transition transition) {
         if (!transition.validate())
-            return new RResponse(HTTP_BAD_REQUEST, new RError("Line validation error for station stop: " + transition));
+            return completed(new RResponse(HTTP_BAD_REQUEST, new RError("Line validation error for station stop: " + transition)));
 
-        RResponse rResponse;
         String itemId = transition.getId();
+        ClockerQueue.Ticket ticket = reserveClocking(1);
+        if (ticket == null)
+            return completed(new RResponse(HTTP_UNAVAILABLE, new RError(CLOCKING_BEHIND)));
 
-        try {
-            DbLineFacacde dbLineFacacde = new DbLineFacacde(productionLine.getFirestore(), productionLine.getProps().isLiveEnv());
-            LineItem actualItemDb = dbLineFacacde.getFor(itemId);
+        return retryOnConflict(() -> lineItemStore.getFor(itemId).thenCompose(actualItemDb -> {
             LineItem lineItemIn = new LineItem(transition);
 
             /* Basic checks must be performed before we advance to the next station, those being:
@@ -98,148 +126,319 @@ public class LineService {
              */
 
             if (actualItemDb == null) { // Check and validate the original item
-                rResponse = new RResponse(HTTP_NOT_FOUND,
-                                          new RError("Original item not found for id " + itemId + "."));
+                return completed(new RResponse(HTTP_NOT_FOUND,
+                                               new RError("Original item not found for id " + itemId + ".")));
             } else if (!lineItemIn.validate()) { // Check and validate the "new" item
-                rResponse = new RResponse(HTTP_BAD_REQUEST,
-                                          new RError("Failed to validate item for id " + itemId + ". Check arguments."));
+                return completed(new RResponse(HTTP_BAD_REQUEST,
+                                               new RError("Failed to validate item for id " + itemId + ". Check arguments.")));
             } else if (!lineItemIn.getId().equalsIgnoreCase(itemId)) { // Check and validate the "new" item
-                rResponse = new RResponse(HTTP_CONFLICT,
-                                          new RError("Body ID not matching path ID. Check arguments."));
-            } else {
-                // We handle the line transition in the production line
-                LineItem verifiedItem = productionLine.toNextStation(actualItemDb, lineItemIn);
-
-                dbLineFacacde.set(verifiedItem);
-
-                clockItemStopTime(transition);
-
-                rResponse = new RResponse(verifiedItem);
+                return completed(new RResponse(HTTP_CONFLICT,
+                                               new RError("Body ID not matching path ID. Check arguments.")));
             }
-        } catch (IllegalStateException e) {
-            e.printStackTrace();
-            rResponse = new RResponse(HTTP_CONFLICT, new RError(e.getMessage()));
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-            rResponse = new RResponse(HTTP_UNAVAILABLE, new RError(e.getMessage()));
-        } catch (ExecutionException | InterruptedException e) {
-            e.printStackTrace();
-            rResponse = new RResponse(HTTP_INTERNAL_ERROR, new RError(e.getMessage()));
-        }
 
-        return rResponse;
+            // We handle the line transition in the production line, then store the item if nobody moved it meanwhile
+            LineItem verifiedItem = toNextStation(actualItemDb, lineItemIn);
+            verifiedItem.writeOver(actualItemDb);
+
+            return lineItemStore.update(verifiedItem).thenApply(written -> {
+                productionLine.getWorkInProgress().moved(actualItemDb, written);
+                clockItemStopTime(ticket, transition);
+                return new RResponse(written);
+            });
+        })).whenComplete((rResponse, t) -> ticket.release()).exceptionally(LineService::errorResponse);
     }
 
-    public RResponse startProduction(Transition transitionIn) {
+    public CompletableFuture<RResponse> startProduction(Transition transitionIn) {
         // When we create a transition we're only interested in the ID.
         if (transitionIn.getId() == null)
-            return new RResponse(HTTP_BAD_REQUEST, new RError("Line initiation validation error for: " + transitionIn));
+            return completed(new RResponse(HTTP_BAD_REQUEST, new RError("Line initiation validation error for: " + transitionIn)));
 
-        RResponse rResponse;
         String itemId = transitionIn.getId();
         Transition transition = new Transition(transitionIn);
         transition.setState(State.CREATED);
 
+        // Validations passed, create document. The store rejects it if the item exists already.
+        LineItem lineItem;
         try {
-            DbLineFacacde dbLineFacacde = new DbLineFacacde(productionLine.getFirestore(), productionLine.getProps().isLiveEnv());
+            lineItem = productionLine.startProduction(itemId);
+        } catch (InstantiationException e) {
+            return completed(errorResponse(e));
+        }
 
-            if (dbLineFacacde.getFor(itemId) != null) {
-                rResponse = new RResponse(HTTP_CONFLICT, new RError("Failed to create existing object for existing id: " + itemId));
-            } else {    // Validations passed, create document
-                clockItemStartTime(transition);
-                LineItem lineItem = productionLine.startProduction(itemId);
+        ClockerQueue.Ticket ticket = reserveClocking(1);
+        if (ticket == null)
+            return completed(new RResponse(HTTP_UNAVAILABLE, new RError(CLOCKING_BEHIND)));
+
+        return lineItemStore.create(lineItem)
+                .thenApply(written -> {
+                    productionLine.getWorkInProgress().moved(null, written);
+                    clockItemStartTime(ticket, transition);
+                    return new RResponse(HTTP_CREATED, written);
+                })
+                .whenComplete((rResponse, t) -> ticket.release())
+                .exceptionally(t -> {
+                    if (unwrap(t) instanceof StoreConflictException)
+                        return new RResponse(HTTP_CONFLICT, new RError("Failed to create existing object for existing id: " + itemId));
+
+                    return errorResponse(t);
+                });
+    }
 
-                dbLineFacacde.set(lineItem);
+    /* Performs a burst of station starts and stops with one read and one write round trip:
+     * 1. All referenced items are fetched at once,
+     * 2. Every transition is checked like its single counterpart, in order, so that an item may move more than once,
+     * 3. The resulting items are committed in a single batch, on condition that none of them changed since step 1.
+     * If one did, the burst is checked again against fresh items. The response holds a result per transition.
+     * If the commit fails, every accepted transition fails with it.
+     */
+    public CompletableFuture<RResponse> batchTransitions(List<BatchTransition> transitions) {
+        if (transitions == null || transitions.isEmpty())
+            return completed(new RResponse(HTTP_BAD_REQUEST, new RError("Batch cannot be empty.")));
+        else if (transitions.size() > LineItemStore.MAX_BATCH_SIZE)
+            return completed(new RResponse(HTTP_BAD_REQUEST, new RError("Batch cannot hold more than " + LineItemStore.MAX_BATCH_SIZE + " transitions.")));
+
+        HashSet<String> itemIds = new HashSet<>();
+        for (BatchTransition transition : transitions) {
+            if (transition != null && transition.getId() != null)
+                itemIds.add(transition.getId());
+        }
 
-                rResponse = new RResponse(HTTP_CREATED, lineItem);
+        ClockerQueue.Ticket ticket = reserveClocking(transitions.size());
+        if (ticket == null)
+            return completed(new RResponse(HTTP_UNAVAILABLE, new RError(CLOCKING_BEHIND)));
+
+        return retryOnConflict(() -> lineItemStore.getAllFor(itemIds).thenCompose(actualItems -> {
+            HashMap<String, LineItem> readItems = new HashMap<>(actualItems);
+            ArrayList<TransitionResult> results = new ArrayList<>();
+            LinkedHashMap<String, LineItem> verifiedItems = new LinkedHashMap<>();
+            for (BatchTransition transition : transitions) {
+                TransitionResult result = batchTransition(transition, actualItems);
+
+                if (result.getItem() != null) {
+                    actualItems.put(result.getId(), result.getItem());
+                    verifiedItems.put(result.getId(), result.getItem());
+                }
+                results.add(result);
             }
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-            rResponse = new RResponse(HTTP_UNAVAILABLE, new RError(e.getMessage()));
-        } catch (ExecutionException | InterruptedException | IllegalArgumentException e) {
-            e.printStackTrace();
-            rResponse = new RResponse(HTTP_INTERNAL_ERROR, new RError(e.getMessage()));
-        }
 
-        return rResponse;
+            return lineItemStore.updateAll(verifiedItems.values()).handle((written, t) -> {
+                if (t != null) {
+                    t = unwrap(t);
+                    if (t instanceof StoreConflictException)
+                        throw (StoreConflictException) t;
+
+                    t.printStackTrace();
+                    for (TransitionResult result : results) {
+                        if (result.getItem() != null) {
+                            result.setItem(null);
+                            result.setCode(HTTP_INTERNAL_ERROR);
+                            result.setErrorMessage(t.getMessage());
+                        }
+                    }
+
+                    return new RResponse(HTTP_INTERNAL_ERROR, results);
+                }
+
+                // The last result of every item reports it as stored, with its new version
+                HashMap<String, LineItem> writtenItems = new HashMap<>();
+                for (LineItem lineItem : written) {
+                    writtenItems.put(lineItem.getId(), lineItem);
+                    productionLine.getWorkInProgress().moved(readItems.get(lineItem.getId()), lineItem);
+                }
+
+                // Items are stored, clock them in the order they moved
+                for (int i = 0; i < transitions.size(); i++) {
+                    TransitionResult result = results.get(i);
+                    if (result.getItem() == null)
+                        continue;
+                    else if (result.getItem() == verifiedItems.get(result.getId()))
+                        result.setItem(writtenItems.get(result.getId()));
+
+                    BatchTransition transition = transitions.get(i);
+                    if (transition.getOperation() == Operation.START)
+                        clockItemStartTime(ticket, transition);
+                    else
+                        clockItemStopTime(ticket, transition);
+                }
+
+                return new RResponse(results);
+            });
+        })).whenComplete((rResponse, t) -> ticket.release()).exceptionally(LineService::errorResponse);
     }
 
-    public RResponse getItem(String itemId) {
-        if (itemId == null)
-            return new RResponse(HTTP_BAD_REQUEST, new RError("itemId cannot be null!"));
+    private TransitionResult batchTransition(BatchTransition transition, HashMap<String, LineItem> actualItems) {
+        if (transition == null || !transition.validate())
+            return new TransitionResult(transition != null ? transition.getId() : null, HTTP_BAD_REQUEST,
+                                        "Line validation error for batch transition: " + transition);
+
+        String itemId = transition.getId();
+        LineItem actualItemDb = actualItems.get(itemId);
+        LineItem lineItemIn = new LineItem(transition);
+
+        if (actualItemDb == null)
+            return new TransitionResult(itemId, HTTP_NOT_FOUND, "Original item not found for id " + itemId + ".");
+        else if (transition.getOperation() == Operation.START && actualItemDb.isDone())
+            return new TransitionResult(itemId, HTTP_CONFLICT, "Cannot produce an item twice.");
+        else if (!lineItemIn.validate())
+            return new TransitionResult(itemId, HTTP_BAD_REQUEST, "Failed to validate item for id " + itemId + ". Check arguments.");
 
-        RResponse rResponse;
         try {
-            DbLineFacacde dbLineFacacde = new DbLineFacacde(productionLine.getFirestore(), productionLine.getProps().isLiveEnv());
-            LineItem lineItem = dbLineFacacde.getFor(itemId);
+            LineItem verifiedItem = transition.getOperation() == Operation.START ?
+                                    productionLine.fromStation(actualItemDb, lineItemIn) :
+                                    productionLine.toNextStation(actualItemDb, lineItemIn);
+            verifiedItem.writeOver(actualItemDb);
 
-            if (lineItem != null) {
-                rResponse = new RResponse(lineItem);
-            } else {
-                rResponse = new RResponse(HTTP_NOT_FOUND, new RError("Item not found for provided id: " + itemId));
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            rResponse = new RResponse(HTTP_INTERNAL_ERROR, new RError(e.getMessage()));
+            return new TransitionResult(itemId, HTTP_OK, verifiedItem);
+        } catch (IllegalStateException e) {
+            return new TransitionResult(itemId, HTTP_CONFLICT, e.getMessage());
+        } catch (InstantiationException e) {
+            return new TransitionResult(itemId, HTTP_UNAVAILABLE, e.getMessage());
         }
+    }
 
-        return rResponse;
+    public CompletableFuture<RResponse> getItem(String itemId) {
+        if (itemId == null)
+            return completed(new RResponse(HTTP_BAD_REQUEST, new RError("itemId cannot be null!")));
+
+        return lineItemStore.getFor(itemId).thenApply(lineItem -> {
+            if (lineItem != null)
+                return new RResponse(lineItem);
+            else
+                return new RResponse(HTTP_NOT_FOUND, new RError("Item not found for provided id: " + itemId));
+        }).exceptionally(LineService::errorResponse);
     }
 
-    public RResponse getAllItems() {
-        RResponse rResponse;
+    public CompletableFuture<RResponse> getAllItems() {
+        return lineItemStore.getAll().thenApply(lineItems -> {
+            if (lineItems != null)
+                return new RResponse(lineItems);
+            else
+                return new RResponse(HTTP_NOT_FOUND, new RError("No items found! Try adding some first ;)"));
+        }).exceptionally(LineService::errorResponse);
+    }
 
-        try {
-            DbLineFacacde dbLineFacacde = new DbLineFacacde(productionLine.getFirestore(), productionLine.getProps().isLiveEnv());
-            ArrayList<LineItem> lineItems = dbLineFacacde.getAll();
+    public CompletableFuture<RResponse> getItemPage(int pageSize, String pageToken) {
+        if (pageSize <= 0)
+            return completed(new RResponse(HTTP_BAD_REQUEST, new RError("pageSize must be a positive number.")));
 
-            if (lineItems != null) {
-                rResponse = new RResponse(lineItems);
-            } else {
-                rResponse = new RResponse(HTTP_NOT_FOUND, new RError("No items found! Try adding some first ;)"));
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            rResponse = new RResponse(HTTP_INTERNAL_ERROR, new RError(e.getMessage()));
-        }
+        return lineItemStore.getPage(pageSize, pageToken)
+                .thenApply(RResponse::new)
+                .exceptionally(LineService::errorResponse);
+    }
 
-        return rResponse;
+    // Streams all items as newline delimited JSON, one item per line, written as the documents arrive.
+    // The status is sent before the first item, so a failure mid-stream can only cut the body short.
+    public RResponse streamAllItems() {
+        return new RStreamResponse(HTTP_OK, CONTENT_TYPE_NDJSON, os -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+
+            try {
+                lineItemStore.stream(lineItem -> {
+                    try {
+                        gson.toJson(lineItem, LineItem.class, writer);
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (ExecutionException e) {
+                throw new IOException("Item stream failed.", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Item stream interrupted.", e);
+            } finally {
+                writer.flush();
+            }
+        });
     }
 
-    public RResponse deleteLineEntryForItem(String itemId) {
+    public CompletableFuture<RResponse> deleteLineEntryForItem(String itemId) {
         if (this.productionLine.getProps().isLiveEnv())
-            return new RResponse(HTTP_FORBIDDEN, new RError("Not allowed to delete entry in production."));
+            return completed(new RResponse(HTTP_FORBIDDEN, new RError("Not allowed to delete entry in production.")));
+
+        return lineItemStore.getFor(itemId).thenCompose(lineItem -> {
+            if (lineItem == null)
+                return completed(new RResponse(HTTP_CONFLICT, new RError("Failed to delete non-existing object, for id: " + itemId)));
+
+            return CompletableFuture.allOf(lineItemStore.deleteFor(itemId), clockerService.deleteFor(itemId))
+                    .thenApply(done -> {
+                        productionLine.getWorkInProgress().moved(lineItem, null);
+                        return new RResponse(HTTP_OK, "Deleted: " + lineItem.getId());
+                    });
+        }).exceptionally(LineService::errorResponse);
+    }
 
-        RResponse rResponse;
+    // Returns null if clocking is behind, in which case no item may move. See ClockerService.reserve.
+    private ClockerQueue.Ticket reserveClocking(int events) {
         try {
-            DbLineFacacde dbLineFacacde = new DbLineFacacde(productionLine.getFirestore(), productionLine.getProps().isLiveEnv());
-
-            LineItem lineItem = dbLineFacacde.getFor(itemId);
-            if (lineItem == null) {
-                rResponse = new RResponse(HTTP_CONFLICT, new RError("Failed to delete non-existing object, for id: " + itemId));
-            } else {
-                dbLineFacacde.deleteFor(itemId);
-                clockerService.deleteFor(itemId);
-
-                rResponse = new RResponse(HTTP_OK, "Deleted: " + lineItem.getId());
-            }
-        } catch (ExecutionException | InterruptedException | IllegalArgumentException e) {
-            e.printStackTrace();
-            rResponse = new RResponse(HTTP_INTERNAL_ERROR, new RError(e.getMessage()));
+            return clockerService.reserve(events);
+        } catch (RejectedExecutionException e) {
+            return null;
         }
-
-        return rResponse;
     }
 
-    private void clockItemStartTime(Transition transition) throws ExecutionException, InterruptedException {
+    private void clockItemStartTime(ClockerQueue.Ticket ticket, Transition transition) {
         String itemId = transition.getId();
         String stationId = transition.getCurrentStationId() == null ? productionLine.getStartStationId() : transition.getCurrentStationId();
 
-        clockerService.setTime(itemId, stationId, Operation.START);
+        clockerService.setTime(ticket, itemId, stationId, Operation.START);
     }
-    private void clockItemStopTime(Transition transition) throws ExecutionException, InterruptedException {
+
+    private void clockItemStopTime(ClockerQueue.Ticket ticket, Transition transition) {
         String itemId = transition.getId();
 
-        clockerService.setTime(itemId, transition.getCurrentStationId(), Operation.STOP);
+        clockerService.setTime(ticket, itemId, transition.getCurrentStationId(), Operation.STOP);
+    }
+
+    // The production line reports failures through checked exceptions, which cannot leave a future's stage as is.
+    private LineItem fromStation(LineItem actualItem, LineItem lineItemIn) {
+        try {
+            return productionLine.fromStation(actualItem, lineItemIn);
+        } catch (InstantiationException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private LineItem toNextStation(LineItem actualItem, LineItem lineItemIn) {
+        try {
+            return productionLine.toNextStation(actualItem, lineItemIn);
+        } catch (InstantiationException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /* Runs an attempt that reads items, checks them and writes them back conditionally. If the write is rejected
+     * because an item changed in between, the attempt is run again. The store has dropped the stale items from its
+     * cache by then, so the next attempt checks against the items as they are now.
+     */
+    private static CompletableFuture<RResponse> retryOnConflict(Supplier<CompletableFuture<RResponse>> attempt) {
+        return retryOnConflict(attempt, 1);
+    }
+
+    private static CompletableFuture<RResponse> retryOnConflict(Supplier<CompletableFuture<RResponse>> attempt, int attempts) {
+        return attempt.get().handle((rResponse, t) -> {
+            if (t == null)
+                return completed(rResponse);
+            else if (attempts < MAX_WRITE_ATTEMPTS && unwrap(t) instanceof StoreConflictException)
+                return retryOnConflict(attempt, attempts + 1);
+
+            return CompletableFuture.<RResponse>failedFuture(unwrap(t));
+        }).thenCompose(rResponse -> rResponse);
+    }
+
+    private static CompletableFuture<RResponse> completed(RResponse rResponse) {
+        return CompletableFuture.completedFuture(rResponse);
+    }
+
+    private static RResponse errorResponse(Throwable t) {
+        Throwable cause = unwrap(t);
+        cause.printStackTrace();
+
+        if (cause instanceof IllegalStateException || cause instanceof StoreConflictException)
+            return new RResponse(HTTP_CONFLICT, new RError(cause.getMessage()));
+        else if (cause instanceof InstantiationException)
+            return new RResponse(HTTP_UNAVAILABLE, new RError(cause.getMessage()));
+
+        return new RResponse(HTTP_INTERNAL_ERROR, new RError(cause.getMessage()));
     }
 }
@@ -0,0 +1,148 @@
+package com.svcline;
+
+import com.svcline.models.Props;
+import com.svcline.prodline.ConfigurationReloader;
+import com.svcline.prodline.ConfigurationSnapshot;
+import com.svcline.prodline.ProductLineConfiguration;
+import com.svcline.prodline.ProductionLine;
+import com.svcline.store.Stores;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.svcline.store.StoreFutures.unwrap;
+
+/* Brings up the production line as soon as the function instance loads, instead of on the first request.
+ * Phases that do not depend on each other run in parallel:
+ * 1. The properties are loaded, everything else depends on them,
+ * 2. The stores are created, for Firestore that is parsing the credentials and building the client,
+ *    while the configuration snapshot, if one is set, is read,
+ * 3. The line is initialized from the snapshot, or from the database if there is none.
+ * When booted from a snapshot, the configuration is read from the database in the background. That read opens
+ * the Firestore channel before the first request needs it, and if the configuration differs from the snapshot the
+ * line switches to it. When the configuration is watched, the first push of the watch does that check instead.
+ * The work in progress is counted from the stored items in the background as well.
+ * Every phase logs how long it took.
+ */
+class LineStartup {
+    private static final Logger logger = Logger.getLogger(LineStartup.class.getName());
+
+    // Threads end when idle, and never keep the JVM alive.
+    private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "line-startup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private LineStartup() {
+    }
+
+    static CompletableFuture<ProductionLine> begin() {
+        long started = System.nanoTime();
+
+        CompletableFuture<Props> props = CompletableFuture.supplyAsync(() -> timed("properties", Props::new), executor);
+        CompletableFuture<Stores> stores = props.thenApplyAsync(p -> timed("stores", () -> Stores.from(p)), executor);
+        CompletableFuture<ProductLineConfiguration> snapshot =
+                props.thenApplyAsync(p -> timed("snapshot", () -> ConfigurationSnapshot.read(p.getConfigurationSnapshot())), executor);
+
+        return CompletableFuture.allOf(stores, snapshot)
+                .thenApplyAsync(done -> boot(props.join(), stores.join(), snapshot.join(), started), executor);
+    }
+
+    private static ProductionLine boot(Props props, Stores stores, ProductLineConfiguration snapshot, long started) {
+        ProductionLine productionLine = new ProductionLine(stores);
+        ProductLineConfiguration plc;
+
+        if (snapshot != null) {
+            plc = timed("configuration", () -> fromSnapshot(stores, snapshot));
+        } else {
+            plc = timed("configuration", () -> fromDb(stores, props.getCurrentlyLoadedConfiguration()));
+        }
+
+        timed("line", () -> {
+            productionLine.init(plc, props);
+            return null;
+        });
+
+        if (props.isConfigurationWatched()) {
+            CompletableFuture.runAsync(() -> timed("configuration watch", () -> new ConfigurationReloader(productionLine, props, stores).watch()), executor)
+                    .exceptionally(t -> {
+                        logger.log(Level.WARNING, "Startup: could not watch the configuration, it changes with a restart only.", unwrap(t));
+                        return null;
+                    });
+        } else if (snapshot != null) {
+            CompletableFuture.runAsync(() -> verify(productionLine, props, stores, snapshot), executor);
+        }
+
+        CompletableFuture.runAsync(() -> timed("work in progress", () -> {
+            productionLine.getWorkInProgress().rebuild(stores.getLineItemStore());
+            return null;
+        }), executor).exceptionally(t -> {
+            logger.log(Level.WARNING, "Startup: could not count the work in progress, counting from zero.", unwrap(t));
+            return null;
+        });
+
+        logger.info("Startup: line ready after " + millisSince(started) + " ms, configured from the " + (snapshot != null ? "snapshot." : "database."));
+
+        return productionLine;
+    }
+
+    // Runs concurrently with the first requests, which are served with the snapshot until the check is done.
+    private static void verify(ProductionLine productionLine, Props props, Stores stores, ProductLineConfiguration snapshot) {
+        String configId = props.getCurrentlyLoadedConfiguration();
+
+        try {
+            ProductLineConfiguration plc = timed("configuration check", () -> fromDb(stores, configId));
+
+            if (ConfigurationSnapshot.sameLine(snapshot, plc)) {
+                logger.info("Startup: configuration snapshot matches " + configId + " in the database.");
+                return;
+            }
+
+            logger.warning("Startup: configuration snapshot differs from " + configId + " in the database, using the database configuration.");
+            productionLine.init(plc, props);
+        } catch (RuntimeException | InstantiationException | IOException e) {
+            logger.log(Level.WARNING, "Startup: could not check the configuration snapshot, keeping it.", unwrap(e));
+        }
+    }
+
+    private static ProductLineConfiguration fromSnapshot(Stores stores, ProductLineConfiguration snapshot) throws IOException {
+        ProductLineConfiguration plc = new ProductLineConfiguration(stores.getConfigurationStore());
+        plc.loadFrom(snapshot);
+
+        return plc;
+    }
+
+    private static ProductLineConfiguration fromDb(Stores stores, String configId) throws IOException {
+        ProductLineConfiguration plc = new ProductLineConfiguration(stores.getConfigurationStore());
+        plc.loadFromDb(configId);
+
+        return plc;
+    }
+
+    // Checked exceptions leave the phase wrapped, so that phases can run as stages of a future.
+    private static <T> T timed(String phase, Callable<T> callable) {
+        long started = System.nanoTime();
+
+        try {
+            return callable.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            logger.info("Startup: " + phase + " took " + millisSince(started) + " ms.");
+        }
+    }
+
+    private static long millisSince(long started) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+}
@@ -0,0 +1,61 @@
+package com.svcline.handlers;
+
+import com.google.cloud.functions.HttpRequest;
+import com.google.cloud.functions.HttpResponse;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.routler.RContext;
+import com.routler.RError;
+import com.routler.RResponse;
+import com.routler.Routeable;
+import com.svcline.LineService;
+import com.svcline.prodline.BatchTransition;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
+import static java.net.HttpURLConnection.HTTP_NOT_IMPLEMENTED;
+
+// Accepts a JSON array of transitions, each with an operation (START or STOP), and performs them as one batch.
+public class BatchLineHandler implements Routeable {
+    private static final Gson gson = new Gson();
+
+    @Override
+    public RResponse get(RContext context, HttpRequest request, HttpResponse response) {
+        return new RResponse(HTTP_NOT_IMPLEMENTED, new RError("GET method not implemented"));
+    }
+
+    @Override
+    public RResponse put(RContext context, HttpRequest request, HttpResponse response) {
+        return new RResponse(HTTP_NOT_IMPLEMENTED, new RError("PUT method not implemented"));
+    }
+
+    @Override
+    public RResponse patch(RContext context, HttpRequest request, HttpResponse response) {
+        return new RResponse(HTTP_NOT_IMPLEMENTED, new RError("PATCH method not implemented"));
+    }
+
+    @Override
+    public RResponse post(RContext context, HttpRequest request, HttpResponse response) {
+        BatchTransition[] transitions;
+
+        try {
+            transitions = gson.fromJson(request.getReader(), BatchTransition[].class);
+        } catch (IOException | JsonParseException e) {
+            e.printStackTrace();
+            return new RResponse(HTTP_BAD_REQUEST, new RError("Unexpected error while reading batch. Please try again."));
+        }
+
+        if (transitions == null)
+            return new RResponse(HTTP_BAD_REQUEST, new RError("Batch cannot be empty."));
+
+        LineService lineService = new LineService(context);
+        return lineService.batchTransitions(Arrays.asList(transitions)).join();
+    }
+
+    @Override
+    public RResponse delete(RContext context, HttpRequest request, HttpResponse response) {
+        return new RResponse(HTTP_NOT_IMPLEMENTED, new RError("DELETE method not implemented"));
+    }
+}
@@ -4,7 +4,6 @@ import com.google.cloud.functions.HttpRequest;
 import com.google.cloud.functions.HttpResponse;
 import com.routler.*;
 import com.svcline.prodline.ProductLineConfiguration;
-import com.svcline.prodline.db.DbProdLineConfiguration;
 
 import java.util.logging.Logger;
 
@@ -12,19 +11,13 @@ import static java.net.HttpURLConnection.*;
 
 public class ConfigurationHandler implements Routeable {
     private static final String ITEM_ID = "{configId}";
-    private RContext RContext;
 
     @Override
-    public void setContext(RContext RContext) {
-        this.RContext = RContext;
-    }
-
-    @Override
-    public RResponse get(Route route, HttpRequest request, HttpResponse response) {
+    public RResponse get(RContext context, HttpRequest request, HttpResponse response) {
         RResponse rResponse;
 
-        if (!route.isNaked()) {
-            rResponse = getFor(route.getPathVal(ITEM_ID));
+        if (!context.isNaked()) {
+            rResponse = getFor(context, context.getPathVal(ITEM_ID));
         } else {
             return new RResponse(HTTP_BAD_REQUEST, new RError("Provide config ID which you want."));
         }
@@ -32,15 +25,14 @@ public class ConfigurationHandler implements Routeable {
         return rResponse;
     }
 
-    private RResponse getFor(String itemId) {
+    private RResponse getFor(RContext context, String itemId) {
         if (itemId == null || itemId.isBlank()) {
             return new RResponse(HTTP_BAD_REQUEST, new RError("Error while looking up configuration due to miss-crafted id."));
         }
 
         RResponse rResponse;
         try {
-            DbProdLineConfiguration dbProdLineConfiguration = new DbProdLineConfiguration(RContext.getProductionLine().getFirestore());
-            ProductLineConfiguration plc = dbProdLineConfiguration.read(itemId);
+            ProductLineConfiguration plc = context.getConfigurationStore().read(itemId);
 
             if (plc != null) {
                 rResponse = new RResponse(plc.getConfiguredStationMap());
@@ -56,22 +48,22 @@ public class ConfigurationHandler implements Routeable {
     }
 
     @Override
-    public RResponse put(Route route, HttpRequest request, HttpResponse response) {
+    public RResponse put(RContext context, HttpRequest request, HttpResponse response) {
         return null;
     }
 
     @Override
-    public RResponse patch(Route route, HttpRequest request, HttpResponse response) {
+    public RResponse patch(RContext context, HttpRequest request, HttpResponse response) {
         return null;
     }
 
     @Override
-    public RResponse post(Route route, HttpRequest request, HttpResponse response) {
+    public RResponse post(RContext context, HttpRequest request, HttpResponse response) {
         return null;
     }
 
     @Override
-    public RResponse delete(Route route, HttpRequest request, HttpResponse response) {
+    public RResponse delete(RContext context, HttpRequest request, HttpResponse response) {
         return null;
     }
 }
@@ -8,41 +8,42 @@ import com.routler.RContext;
 import com.routler.RError;
 import com.routler.RResponse;
 import com.svcline.prodline.Transition;
-import com.routler.Route;
 import com.routler.Routeable;
 
 import java.io.IOException;
-import java.util.concurrent.ExecutionException;
+import java.util.Optional;
 
 import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
 import static java.net.HttpURLConnection.HTTP_NOT_IMPLEMENTED;
 
 public class LineHandler implements Routeable {
     private static final String ITEM_ID = "{itemId}";
+    private static final String PAGE_SIZE = "pageSize";
+    private static final String PAGE_TOKEN = "pageToken";
+    private static final String FORMAT = "format";
+    private static final String FORMAT_NDJSON = "ndjson";
+    private static final String ACCEPT = "Accept";
+    private static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
     private static final Gson gson = new Gson();
-    private RContext RContext;
 
     @Override
-    public void setContext(RContext RContext) {
-        this.RContext = RContext;
-    }
-
-    @Override
-    public RResponse get(Route route, HttpRequest request, HttpResponse response) {
+    public RResponse get(RContext context, HttpRequest request, HttpResponse response) {
         RResponse rResponse;
 
-        if (route.isNaked()) {
-            rResponse = getAll();
+        if (context.isNaked()) {
+            rResponse = getAll(context, request);
         } else {
-            rResponse = getFor(route.getPathVal(ITEM_ID));
+            rResponse = getFor(context, context.getPathVal(ITEM_ID));
         }
 
         return rResponse;
     }
 
     @Override
-    public RResponse put(Route route, HttpRequest request, HttpResponse response) {
-        String itemId = route.getPathVal(ITEM_ID);
+    public RResponse put(RContext context, HttpRequest request, HttpResponse response) {
+        String itemId = context.getPathVal(ITEM_ID);
         if (itemId == null || itemId.isBlank()) {
             return new RResponse(HTTP_BAD_REQUEST, new RError("Error while updating item due to miss-crafted id."));
         }
@@ -56,13 +57,13 @@ public class LineHandler implements Routeable {
             return new RResponse(HTTP_BAD_REQUEST, new RError("Unexpected error while updating item. Please try again."));
         }
 
-        LineService lineService = new LineService(RContext.getProductionLine());
-        return lineService.stationItemStop(transition);
+        LineService lineService = new LineService(context);
+        return lineService.stationItemStop(transition).join();
     }
 
     @Override
-    public RResponse patch(Route route, HttpRequest request, HttpResponse response) {
-        String itemId = route.getPathVal(ITEM_ID);
+    public RResponse patch(RContext context, HttpRequest request, HttpResponse response) {
+        String itemId = context.getPathVal(ITEM_ID);
         if (itemId == null || itemId.isBlank()) {
             return new RResponse(HTTP_BAD_REQUEST, new RError("Error while updating item due to miss-crafted id."));
         }
@@ -76,20 +77,17 @@ public class LineHandler implements Routeable {
             return new RResponse(HTTP_BAD_REQUEST, new RError("Unexpected error while updating item. Please try again."));
         }
 
-        LineService lineService = new LineService(RContext.getProductionLine());
+        LineService lineService = new LineService(context);
+        RResponse rResponse = lineService.stationItemStart(transition).join();
 
-        try {
-            lineService.stationItemStart(transition);
-        } catch (ExecutionException | InterruptedException e) {
-            e.printStackTrace();
-            return new RResponse(HTTP_BAD_REQUEST, new RError("Item not prepared for processing please prepare."));
-        }
+        if (!rResponse.succeeded())
+            return rResponse;
 
         return new RResponse("Item prepared for production.");
     }
 
     @Override
-    public RResponse post(Route route, HttpRequest request, HttpResponse response) {
+    public RResponse post(RContext context, HttpRequest request, HttpResponse response) {
         Transition transition;
 
         try {
@@ -99,26 +97,46 @@ public class LineHandler implements Routeable {
             return new RResponse(HTTP_BAD_REQUEST, new RError("Unexpected error while creating item. Please try again."));
         }
 
-        LineService lineService = new LineService(RContext.getProductionLine());
-        return lineService.startProduction(transition);
+        LineService lineService = new LineService(context);
+        return lineService.startProduction(transition).join();
     }
 
     @Override
-    public RResponse delete(Route route, HttpRequest request, HttpResponse response) {
+    public RResponse delete(RContext context, HttpRequest request, HttpResponse response) {
         return new RResponse(HTTP_NOT_IMPLEMENTED, new RError("DELETE method not implemented"));
     }
 
-    private RResponse getFor(String itemId) {
+    private RResponse getFor(RContext context, String itemId) {
         if (itemId == null || itemId.isBlank()) {
             return new RResponse(HTTP_BAD_REQUEST, new RError("Error while looking up unit due to miss-crafted id."));
         }
 
-        LineService lineService = new LineService(RContext.getProductionLine());
-        return lineService.getItem(itemId);
+        LineService lineService = new LineService(context);
+        return lineService.getItem(itemId).join();
     }
 
-    private RResponse getAll() {
-        LineService lineService = new LineService(RContext.getProductionLine());
-        return lineService.getAllItems();
+    // Without parameters all items are returned in one array. Use pageSize/pageToken to page through the items,
+    // or ask for application/x-ndjson (Accept header or format=ndjson) to have them streamed.
+    private RResponse getAll(RContext context, HttpRequest request) {
+        LineService lineService = new LineService(context);
+
+        boolean ndjson = request.getFirstQueryParameter(FORMAT).map(FORMAT_NDJSON::equalsIgnoreCase).orElse(false) ||
+                         request.getFirstHeader(ACCEPT).map(accept -> accept.contains(MEDIA_TYPE_NDJSON)).orElse(false);
+        if (ndjson)
+            return lineService.streamAllItems();
+
+        Optional<String> pageSize = request.getFirstQueryParameter(PAGE_SIZE);
+        Optional<String> pageToken = request.getFirstQueryParameter(PAGE_TOKEN);
+        if (pageSize.isEmpty() && pageToken.isEmpty())
+            return lineService.getAllItems().join();
+
+        int size;
+        try {
+            size = pageSize.map(Integer::parseInt).orElse(DEFAULT_PAGE_SIZE);
+        } catch (NumberFormatException e) {
+            return new RResponse(HTTP_BAD_REQUEST, new RError("pageSize must be a number."));
+        }
+
+        return lineService.getItemPage(Math.min(size, MAX_PAGE_SIZE), pageToken.orElse(null)).join();
     }
 }
@@ -0,0 +1,102 @@
+package com.svcline.handlers;
+
+import com.google.cloud.functions.HttpRequest;
+import com.google.cloud.functions.HttpResponse;
+import com.routler.RContext;
+import com.routler.RError;
+import com.routler.RResponse;
+import com.routler.Routeable;
+import com.svcline.prodline.LineRegistry;
+import com.svcline.prodline.ProductionLine;
+
+import static java.net.HttpURLConnection.*;
+
+/* Serves a route of the default line on the line named by the path, /lines/{lineId}/..., see LineRegistry.
+ * The handler of the route gets a context of that line, pinned to its configuration like every request.
+ * Routes need handlers of their own class, hence one subclass per route.
+ */
+public abstract class LineScopedHandler implements Routeable {
+    private static final String LINE_ID = "{lineId}";
+
+    private final Routeable handler;
+
+    protected LineScopedHandler(Routeable handler) {
+        this.handler = handler;
+    }
+
+    public static class Items extends LineScopedHandler {
+        public Items() {
+            super(new LineHandler());
+        }
+    }
+
+    public static class Batch extends LineScopedHandler {
+        public Batch() {
+            super(new BatchLineHandler());
+        }
+    }
+
+    public static class Status extends LineScopedHandler {
+        public Status() {
+            super(new LineStatusHandler());
+        }
+    }
+
+    public static class Metrics extends LineScopedHandler {
+        public Metrics() {
+            super(new MetricsHandler());
+        }
+    }
+
+    private interface Method {
+        RResponse handle(RContext context, HttpRequest request, HttpResponse response);
+    }
+
+    @Override
+    public RResponse get(RContext context, HttpRequest request, HttpResponse response) {
+        return onLine(context, request, response, handler::get);
+    }
+
+    @Override
+    public RResponse put(RContext context, HttpRequest request, HttpResponse response) {
+        return onLine(context, request, response, handler::put);
+    }
+
+    @Override
+    public RResponse patch(RContext context, HttpRequest request, HttpResponse response) {
+        return onLine(context, request, response, handler::patch);
+    }
+
+    @Override
+    public RResponse post(RContext context, HttpRequest request, HttpResponse response) {
+        return onLine(context, request, response, handler::post);
+    }
+
+    @Override
+    public RResponse delete(RContext context, HttpRequest request, HttpResponse response) {
+        return onLine(context, request, response, handler::delete);
+    }
+
+    private RResponse onLine(RContext context, HttpRequest request, HttpResponse response, Method method) {
+        String lineId = context.getPathVal(LINE_ID);
+        if (lineId == null || lineId.isBlank())
+            return new RResponse(HTTP_BAD_REQUEST, new RError("Provide the line ID."));
+
+        LineRegistry lineRegistry = context.getLineRegistry();
+        if (lineRegistry == null)
+            return new RResponse(HTTP_NOT_IMPLEMENTED, new RError("This instance serves its default line only."));
+
+        ProductionLine productionLine;
+        try {
+            productionLine = lineRegistry.get(lineId);
+        } catch (InstantiationException e) {
+            e.printStackTrace();
+            return new RResponse(HTTP_INTERNAL_ERROR, new RError(e.getMessage()));
+        }
+
+        if (productionLine == null)
+            return new RResponse(HTTP_NOT_FOUND, new RError("Line not found for provided id: " + lineId));
+
+        return method.handle(context.forLine(productionLine.pinned()), request, response);
+    }
+}
@@ -0,0 +1,76 @@
+package com.svcline.handlers;
+
+import com.google.cloud.functions.HttpRequest;
+import com.google.cloud.functions.HttpResponse;
+import com.routler.RContext;
+import com.routler.RError;
+import com.routler.RResponse;
+import com.routler.Routeable;
+
+import static java.net.HttpURLConnection.*;
+
+// Serves live views of the line this instance keeps in memory, see WorkInProgress and TaktEstimator, and the
+// dispatch of items to stations in parallel they are used for.
+public class LineStatusHandler implements Routeable {
+    private static final String VIEW_ID = "{viewId}";
+    private static final String VIEW_WIP = "wip";
+    private static final String VIEW_TAKT = "takt";
+    private static final String VIEW_DISPATCH = "dispatch";
+    private static final String STATION_ID = "stationId";
+
+    @Override
+    public RResponse get(RContext context, HttpRequest request, HttpResponse response) {
+        String viewId = context.getPathVal(VIEW_ID);
+        if (viewId == null || viewId.isBlank())
+            return new RResponse(HTTP_BAD_REQUEST, new RError("Provide the line view you want."));
+
+        switch (viewId) {
+            case VIEW_WIP:
+                return new RResponse(context.getProductionLine().getWorkInProgress().get());
+
+            case VIEW_TAKT:
+                return new RResponse(context.getProductionLine().getTaktEstimator().snapshot(context.getProductionLine()));
+
+            case VIEW_DISPATCH:
+                return getDispatch(context, request);
+
+            default:
+                return new RResponse(HTTP_NOT_FOUND, new RError("Line view not found for provided id: " + viewId));
+        }
+    }
+
+    // Where to send an item that passed the station of the stationId query parameter, see ProductionLine.dispatch.
+    private RResponse getDispatch(RContext context, HttpRequest request) {
+        String stationId = request.getFirstQueryParameter(STATION_ID).orElse(null);
+        if (stationId == null || stationId.isBlank())
+            return new RResponse(HTTP_BAD_REQUEST, new RError("Provide the ID of the station the item passed."));
+
+        try {
+            return new RResponse(context.getProductionLine().dispatch(stationId));
+        } catch (IllegalStateException e) {
+            return new RResponse(HTTP_NOT_FOUND, new RError(e.getMessage()));
+        } catch (InstantiationException e) {
+            return new RResponse(HTTP_UNAVAILABLE, new RError(e.getMessage()));
+        }
+    }
+
+    @Override
+    public RResponse put(RContext context, HttpRequest request, HttpResponse response) {
+        return new RResponse(HTTP_NOT_IMPLEMENTED, new RError("PUT method not implemented"));
+    }
+
+    @Override
+    public RResponse patch(RContext context, HttpRequest request, HttpResponse response) {
+        return new RResponse(HTTP_NOT_IMPLEMENTED, new RError("PATCH method not implemented"));
+    }
+
+    @Override
+    public RResponse post(RContext context, HttpRequest request, HttpResponse response) {
+        return new RResponse(HTTP_NOT_IMPLEMENTED, new RError("POST method not implemented"));
+    }
+
+    @Override
+    public RResponse delete(RContext context, HttpRequest request, HttpResponse response) {
+        return new RResponse(HTTP_NOT_IMPLEMENTED, new RError("DELETE method not implemented"));
+    }
+}
@@ -0,0 +1,103 @@
+package com.svcline.handlers;
+
+import com.google.cloud.functions.HttpRequest;
+import com.google.cloud.functions.HttpResponse;
+import com.routler.RContext;
+import com.routler.RError;
+import com.routler.RResponse;
+import com.routler.Routeable;
+import com.svcline.models.clocker.ClockerQueue;
+import com.svcline.models.clocker.bq.BigQueryExporter;
+import com.svcline.prodline.LineRegistry;
+import com.svcline.store.CachingLineItemStore;
+
+import static java.net.HttpURLConnection.*;
+
+// Serves the metrics this instance keeps in memory. They are per instance and reset when it restarts.
+public class MetricsHandler implements Routeable {
+    private static final String METRIC_ID = "{metricId}";
+    private static final String METRIC_CACHE = "cache";
+    private static final String METRIC_CLOCKER = "clocker";
+    private static final String METRIC_EXPORT = "export";
+    private static final String METRIC_LINES = "lines";
+    private static final String METRIC_STATIONS = "stations";
+
+    @Override
+    public RResponse get(RContext context, HttpRequest request, HttpResponse response) {
+        String metricId = context.getPathVal(METRIC_ID);
+        if (metricId == null || metricId.isBlank())
+            return new RResponse(HTTP_BAD_REQUEST, new RError("Provide metric ID which you want."));
+
+        switch (metricId) {
+            case METRIC_CACHE:
+                return getCacheStats(context);
+
+            case METRIC_CLOCKER:
+                return getClockerStats(context);
+
+            case METRIC_EXPORT:
+                return getExportStats(context);
+
+            case METRIC_LINES:
+                return getOpenLines(context);
+
+            case METRIC_STATIONS:
+                return new RResponse(context.getProductionLine().getStationLatencies().snapshot());
+
+            default:
+                return new RResponse(HTTP_NOT_FOUND, new RError("Metric not found for provided id: " + metricId));
+        }
+    }
+
+    private RResponse getCacheStats(RContext context) {
+        CachingLineItemStore cache = context.getProductionLine().getStores().getLineItemCache();
+        if (cache == null)
+            return new RResponse(HTTP_NOT_FOUND, new RError("Line items are not cached on this instance."));
+
+        return new RResponse(cache.getStats());
+    }
+
+    private RResponse getClockerStats(RContext context) {
+        ClockerQueue clockerQueue = ClockerQueue.find(context.getClockerStore());
+        if (clockerQueue == null)
+            return new RResponse(HTTP_NOT_FOUND, new RError("Nothing was clocked on this instance."));
+
+        return new RResponse(clockerQueue.getStats());
+    }
+
+    private RResponse getOpenLines(RContext context) {
+        LineRegistry lineRegistry = context.getLineRegistry();
+        if (lineRegistry == null)
+            return new RResponse(HTTP_NOT_FOUND, new RError("This instance serves its default line only."));
+
+        return new RResponse(lineRegistry.getOpenLineIds());
+    }
+
+    private RResponse getExportStats(RContext context) {
+        BigQueryExporter exporter = BigQueryExporter.find(context.getProductionLine().getProps());
+        if (exporter == null)
+            return new RResponse(HTTP_NOT_FOUND, new RError("Nothing was exported on this instance."));
+
+        return new RResponse(exporter.getStats());
+    }
+
+    @Override
+    public RResponse put(RContext context, HttpRequest request, HttpResponse response) {
+        return new RResponse(HTTP_NOT_IMPLEMENTED, new RError("PUT method not implemented"));
+    }
+
+    @Override
+    public RResponse patch(RContext context, HttpRequest request, HttpResponse response) {
+        return new RResponse(HTTP_NOT_IMPLEMENTED, new RError("PATCH method not implemented"));
+    }
+
+    @Override
+    public RResponse post(RContext context, HttpRequest request, HttpResponse response) {
+        return new RResponse(HTTP_NOT_IMPLEMENTED, new RError("POST method not implemented"));
+    }
+
+    @Override
+    public RResponse delete(RContext context, HttpRequest request, HttpResponse response) {
+        return new RResponse(HTTP_NOT_IMPLEMENTED, new RError("DELETE method not implemented"));
+    }
+}
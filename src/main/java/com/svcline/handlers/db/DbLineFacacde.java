@@ -1,67 +1,291 @@
 package com.svcline.handlers.db;
 
 import com.google.api.core.ApiFuture;
+import com.google.api.gax.rpc.ApiStreamObserver;
+import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
 import com.svcline.models.LineItem;
+import com.svcline.models.LineItemPage;
+import com.svcline.store.LineItemStore;
+import com.svcline.store.StoreConflictException;
+import com.svcline.store.Stores;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
-public class DbLineFacacde {
+import static com.svcline.store.StoreFutures.isConflict;
+import static com.svcline.store.StoreFutures.toCompletable;
+import static com.svcline.store.StoreFutures.unwrap;
+
+public class DbLineFacacde implements LineItemStore {
     private static final String COLLECTION_LIVE = "lineItem";
     private static final String COLLECTION_TEST = "lineItemTest";
 
-    private static String activeCollection;
-    private static Firestore db;
+    private final String activeCollection;
+    private final Firestore db;
 
     public DbLineFacacde(Firestore firestore, Boolean liveEnvironment) {
+        this(firestore, liveEnvironment, null);
+    }
+
+    // The collection of a line other than the default one, see Stores.forLine.
+    public DbLineFacacde(Firestore firestore, Boolean liveEnvironment, String lineId) {
         db = firestore;
-        activeCollection = liveEnvironment ? COLLECTION_LIVE : COLLECTION_TEST;
+        activeCollection = Stores.collectionOf(liveEnvironment ? COLLECTION_LIVE : COLLECTION_TEST, lineId);
     }
 
-    public void set(LineItem lineItem) throws ExecutionException, InterruptedException {
+    @Override
+    public CompletableFuture<Void> set(LineItem lineItem) {
         ApiFuture<WriteResult> wr = db.collection(activeCollection).document(lineItem.getId()).set(lineItem);
 
-        //noinspection StatementWithEmptyBody
-        while (!wr.isDone()) { /* We lock the thread waiting for the Firestore operation to be done. using callbacks does not help  */ }
+        // If the future fails the "set" failed.
+        return toCompletable(wr).thenApply(result -> null);
+    }
+
+    @Override
+    public CompletableFuture<LineItem> create(LineItem lineItem) {
+        LineItem written = new LineItem(lineItem);
+        written.setVersion(1);
+
+        ApiFuture<WriteResult> wr = db.collection(activeCollection).document(written.getId()).create(written);
 
-        // We get the result. If this throws an exception the "set" failed.
-        //noinspection ResultOfMethodCallIgnored
-        wr.get().getUpdateTime();
+        return toCompletable(wr).handle((result, t) -> {
+            if (t != null)
+                throw failure(t, "Item already exists for id " + written.getId() + ".");
+
+            written.setUpdateTime(result.getUpdateTime());
+            return written;
+        });
     }
 
-    public void deleteFor(String itemId) throws ExecutionException, InterruptedException {
-        ApiFuture<WriteResult> wr = db.collection(activeCollection).document(itemId).delete();
+    @Override
+    public CompletableFuture<LineItem> update(LineItem lineItem) {
+        return updateAll(List.of(lineItem)).thenApply(written -> written.get(0));
+    }
+
+    /* Every item is written with a precondition on the update time it was read with, so the commit fails if any of
+     * the documents changed in between, and the items are written in one round trip. Items that were not read from
+     * Firestore carry no update time; those are fetched first and compared by version, at the cost of a round trip.
+     */
+    @Override
+    public CompletableFuture<List<LineItem>> updateAll(Collection<LineItem> lineItems) {
+        if (lineItems.isEmpty())
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        else if (lineItems.size() > MAX_BATCH_SIZE)
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Cannot write more than " + MAX_BATCH_SIZE + " items in one batch."));
+
+        return updateTimesFor(lineItems).thenCompose(updateTimes -> {
+            WriteBatch batch = db.batch();
+            List<LineItem> written = new ArrayList<>(lineItems.size());
+
+            for (LineItem lineItem : lineItems) {
+                Timestamp readAt = lineItem.getUpdateTime() != null ? lineItem.getUpdateTime() : updateTimes.get(lineItem.getId());
+                if (readAt == null)
+                    throw new StoreConflictException("Item changed since read for id " + lineItem.getId() + ".");
 
-        //noinspection StatementWithEmptyBody
-        while (!wr.isDone()) { /* We lock the thread waiting for the Firestore operation to be done. using callbacks does not help  */ }
+                LineItem next = new LineItem(lineItem);
+                next.setVersion(lineItem.getVersion() + 1);
+                batch.update(db.collection(activeCollection).document(next.getId()), fieldsOf(next), Precondition.updatedAt(readAt));
+                written.add(next);
+            }
 
-        //noinspection ResultOfMethodCallIgnored
-        wr.get().getUpdateTime();
+            return toCompletable(batch.commit()).thenApply(results -> {
+                for (int i = 0; i < results.size(); i++) {
+                    written.get(i).setUpdateTime(results.get(i).getUpdateTime());
+                }
+
+                return written;
+            });
+        }).exceptionally(t -> {
+            throw failure(t, "Items changed since read, nothing was written.");
+        });
     }
 
-    public LineItem getFor(String itemId) throws ExecutionException, InterruptedException {
+    @Override
+    public CompletableFuture<Void> deleteFor(String itemId) {
+        ApiFuture<WriteResult> wr = db.collection(activeCollection).document(itemId).delete();
+
+        return toCompletable(wr).thenApply(result -> null);
+    }
+
+    @Override
+    public CompletableFuture<LineItem> getFor(String itemId) {
         ApiFuture<DocumentSnapshot> query = db.collection(activeCollection).document(itemId).get();
-        DocumentSnapshot document = query.get();
 
-        return document.exists() ? document.toObject(LineItem.class) : null;
+        return toCompletable(query).thenApply(document -> document.exists() ? toLineItem(document) : null);
+    }
+
+    // Fetches all items in a single round trip.
+    @Override
+    public CompletableFuture<HashMap<String, LineItem>> getAllFor(Collection<String> itemIds) {
+        if (itemIds.isEmpty())
+            return CompletableFuture.completedFuture(new HashMap<>());
+
+        DocumentReference[] refs = new DocumentReference[itemIds.size()];
+        int i = 0;
+        for (String itemId : itemIds) {
+            refs[i++] = db.collection(activeCollection).document(itemId);
+        }
+
+        return toCompletable(db.getAll(refs)).thenApply(documents -> {
+            HashMap<String, LineItem> lineItems = new HashMap<>();
+
+            for (DocumentSnapshot document : documents) {
+                if (document.exists())
+                    lineItems.put(document.getId(), toLineItem(document));
+            }
+
+            return lineItems;
+        });
+    }
+
+    // Writes all items atomically in one batch.
+    @Override
+    public CompletableFuture<Void> setAll(Collection<LineItem> lineItems) {
+        if (lineItems.isEmpty())
+            return CompletableFuture.completedFuture(null);
+        else if (lineItems.size() > MAX_BATCH_SIZE)
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Cannot write more than " + MAX_BATCH_SIZE + " items in one batch."));
+
+        WriteBatch batch = db.batch();
+        for (LineItem lineItem : lineItems) {
+            batch.set(db.collection(activeCollection).document(lineItem.getId()), lineItem);
+        }
+
+        // If the future fails the batch failed and nothing was written.
+        return toCompletable(batch.commit()).thenApply(results -> null);
     }
 
-    public ArrayList<LineItem> getAll() throws ExecutionException, InterruptedException {
+    @Override
+    public CompletableFuture<ArrayList<LineItem>> getAll() {
         ApiFuture<QuerySnapshot> query = db.collection(activeCollection).get();
 
-        QuerySnapshot querySnapshot = query.get();
-        List<QueryDocumentSnapshot> documents = querySnapshot.getDocuments();
-        ArrayList<LineItem> lineItems = new ArrayList<>();
+        return toCompletable(query).thenApply(querySnapshot -> {
+            List<QueryDocumentSnapshot> documents = querySnapshot.getDocuments();
+            ArrayList<LineItem> lineItems = new ArrayList<>();
 
-        if (documents.isEmpty())
-            return null;
+            if (documents.isEmpty())
+                return null;
 
-        for (QueryDocumentSnapshot document : documents) {
-            lineItems.add(document.toObject(LineItem.class));
+            for (QueryDocumentSnapshot document : documents) {
+                lineItems.add(toLineItem(document));
+            }
+
+            return lineItems;
+        });
+    }
+
+    // Pages are ordered by document id, so the item id works as a startAfter cursor.
+    @Override
+    public CompletableFuture<LineItemPage> getPage(int pageSize, String pageToken) {
+        Query query = db.collection(activeCollection).orderBy(FieldPath.documentId()).limit(pageSize);
+        if (pageToken != null && !pageToken.isBlank())
+            query = query.startAfter(pageToken);
+
+        return toCompletable(query.get()).thenApply(querySnapshot -> {
+            List<QueryDocumentSnapshot> documents = querySnapshot.getDocuments();
+            ArrayList<LineItem> lineItems = new ArrayList<>(documents.size());
+
+            for (QueryDocumentSnapshot document : documents) {
+                lineItems.add(toLineItem(document));
+            }
+
+            String nextPageToken = documents.size() == pageSize ? documents.get(documents.size() - 1).getId() : null;
+
+            return new LineItemPage(lineItems, nextPageToken);
+        });
+    }
+
+    // Update times of the stored items that have no update time yet, for those still at the version they were read at.
+    private CompletableFuture<HashMap<String, Timestamp>> updateTimesFor(Collection<LineItem> lineItems) {
+        HashMap<String, Long> versions = new HashMap<>();
+        for (LineItem lineItem : lineItems) {
+            if (lineItem.getUpdateTime() == null)
+                versions.put(lineItem.getId(), lineItem.getVersion());
         }
 
-        return lineItems;
+        if (versions.isEmpty())
+            return CompletableFuture.completedFuture(new HashMap<>());
+
+        return getAllFor(versions.keySet()).thenApply(stored -> {
+            HashMap<String, Timestamp> updateTimes = new HashMap<>();
+
+            for (LineItem lineItem : stored.values()) {
+                if (lineItem.getVersion() == versions.get(lineItem.getId()))
+                    updateTimes.put(lineItem.getId(), lineItem.getUpdateTime());
+            }
+
+            return updateTimes;
+        });
+    }
+
+    // Items are handed over as they arrive from the query stream.
+    // If the consumer throws, the remaining items are skipped and the error rethrown.
+    @Override
+    public void stream(Consumer<LineItem> consumer) throws ExecutionException, InterruptedException {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+
+        db.collection(activeCollection).stream(new ApiStreamObserver<>() {
+            @Override
+            public void onNext(DocumentSnapshot document) {
+                if (done.isDone())
+                    return;
+
+                try {
+                    consumer.accept(toLineItem(document));
+                } catch (RuntimeException e) {
+                    done.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                done.complete(null);
+            }
+        });
+
+        done.get();
+    }
+
+    private static LineItem toLineItem(DocumentSnapshot document) {
+        LineItem lineItem = document.toObject(LineItem.class);
+        if (lineItem != null)
+            lineItem.setUpdateTime(document.getUpdateTime());
+
+        return lineItem;
+    }
+
+    // An update replaces all fields, like set would.
+    private static Map<String, Object> fieldsOf(LineItem lineItem) {
+        HashMap<String, Object> fields = new HashMap<>();
+        fields.put("id", lineItem.getId());
+        fields.put("currentStationId", lineItem.getCurrentStationId());
+        fields.put("previousStationId", lineItem.getPreviousStationId());
+        fields.put("state", lineItem.getState() != null ? lineItem.getState().name() : null);
+        fields.put("version", lineItem.getVersion());
+
+        return fields;
+    }
+
+    // Rejected preconditions are reported as conflicts, anything else as it is.
+    private static CompletionException failure(Throwable t, String conflictMessage) {
+        Throwable cause = unwrap(t);
+
+        return new CompletionException(isConflict(cause) && !(cause instanceof StoreConflictException) ?
+                                       new StoreConflictException(conflictMessage, cause) : cause);
     }
-}
\ No newline at end of file
+}
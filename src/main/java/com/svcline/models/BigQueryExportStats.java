@@ -0,0 +1,110 @@
+package com.svcline.models;
+
+// Counters of the BigQuery exporter since the instance started, and the rows it holds now.
+public class BigQueryExportStats {
+    private long bufferedRows;
+    private long retryingRows;
+    private long deadLetterRows;
+    private long outboxRows;
+    private long outboxSegments;
+    private long exportedRows;
+    private long retriedRows;
+    private long deadLetteredRows;
+    private long flushes;
+    private long lastFlushMs;
+    private long maxFlushMs;
+    private double averageFlushMs;
+
+    public BigQueryExportStats() {
+    }
+
+    public BigQueryExportStats(long bufferedRows, long retryingRows, long deadLetterRows, long outboxRows, long outboxSegments,
+                               long exportedRows, long retriedRows, long deadLetteredRows, long flushes, long lastFlushMs,
+                               long maxFlushMs, double averageFlushMs) {
+        this.bufferedRows = bufferedRows;
+        this.retryingRows = retryingRows;
+        this.deadLetterRows = deadLetterRows;
+        this.outboxRows = outboxRows;
+        this.outboxSegments = outboxSegments;
+        this.exportedRows = exportedRows;
+        this.retriedRows = retriedRows;
+        this.deadLetteredRows = deadLetteredRows;
+        this.flushes = flushes;
+        this.lastFlushMs = lastFlushMs;
+        this.maxFlushMs = maxFlushMs;
+        this.averageFlushMs = averageFlushMs;
+    }
+
+    // Rows waiting for their first attempt
+    public long getBufferedRows() {
+        return bufferedRows;
+    }
+
+    // Rows waiting to be sent again after a failure
+    public long getRetryingRows() {
+        return retryingRows;
+    }
+
+    // Rows in the dead-letter buffer now, the oldest are dropped when it is full
+    public long getDeadLetterRows() {
+        return deadLetterRows;
+    }
+
+    // Rows in the outbox that were not shipped yet, zero without an outbox
+    public long getOutboxRows() {
+        return outboxRows;
+    }
+
+    public long getOutboxSegments() {
+        return outboxSegments;
+    }
+
+    public long getExportedRows() {
+        return exportedRows;
+    }
+
+    // Failed attempts that were followed by another one
+    public long getRetriedRows() {
+        return retriedRows;
+    }
+
+    // Rows given up on since the start
+    public long getDeadLetteredRows() {
+        return deadLetteredRows;
+    }
+
+    // Requests to BigQuery, each holding up to a batch of rows
+    public long getFlushes() {
+        return flushes;
+    }
+
+    public long getLastFlushMs() {
+        return lastFlushMs;
+    }
+
+    public long getMaxFlushMs() {
+        return maxFlushMs;
+    }
+
+    public double getAverageFlushMs() {
+        return averageFlushMs;
+    }
+
+    @Override
+    public String toString() {
+        return "BigQueryExportStats{" +
+               "bufferedRows=" + bufferedRows +
+               ", retryingRows=" + retryingRows +
+               ", deadLetterRows=" + deadLetterRows +
+               ", outboxRows=" + outboxRows +
+               ", outboxSegments=" + outboxSegments +
+               ", exportedRows=" + exportedRows +
+               ", retriedRows=" + retriedRows +
+               ", deadLetteredRows=" + deadLetteredRows +
+               ", flushes=" + flushes +
+               ", lastFlushMs=" + lastFlushMs +
+               ", maxFlushMs=" + maxFlushMs +
+               ", averageFlushMs=" + averageFlushMs +
+               '}';
+    }
+}
@@ -0,0 +1,69 @@
+package com.svcline.models;
+
+// Counters of the clocker queue since the instance started, and its current depth.
+public class ClockerQueueStats {
+    private long capacity;
+    private long queuedEvents;
+    private long pendingItems;
+    private long writtenEvents;
+    private long writes;
+    private long failedEvents;
+    private long rejectedReservations;
+
+    public ClockerQueueStats() {
+    }
+
+    public ClockerQueueStats(long capacity, long queuedEvents, long pendingItems, long writtenEvents, long writes,
+                             long failedEvents, long rejectedReservations) {
+        this.capacity = capacity;
+        this.queuedEvents = queuedEvents;
+        this.pendingItems = pendingItems;
+        this.writtenEvents = writtenEvents;
+        this.writes = writes;
+        this.failedEvents = failedEvents;
+        this.rejectedReservations = rejectedReservations;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    // Events reserved or waiting to be written, including those being written
+    public long getQueuedEvents() {
+        return queuedEvents;
+    }
+
+    public long getPendingItems() {
+        return pendingItems;
+    }
+
+    public long getWrittenEvents() {
+        return writtenEvents;
+    }
+
+    // Clocker writes, each of them holding all events queued for an item at the time
+    public long getWrites() {
+        return writes;
+    }
+
+    public long getFailedEvents() {
+        return failedEvents;
+    }
+
+    public long getRejectedReservations() {
+        return rejectedReservations;
+    }
+
+    @Override
+    public String toString() {
+        return "ClockerQueueStats{" +
+               "capacity=" + capacity +
+               ", queuedEvents=" + queuedEvents +
+               ", pendingItems=" + pendingItems +
+               ", writtenEvents=" + writtenEvents +
+               ", writes=" + writes +
+               ", failedEvents=" + failedEvents +
+               ", rejectedReservations=" + rejectedReservations +
+               '}';
+    }
+}
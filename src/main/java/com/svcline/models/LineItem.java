@@ -1,10 +1,13 @@
 package com.svcline.models;
 
+import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.annotation.Exclude;
 import com.svcline.prodline.Transition;
 
 public class LineItem extends Transition {
     private String previousStationId;
+    private long version;                       // Counts the conditional writes of the item, see LineItemStore.update
+    private transient Timestamp updateTime;     // When Firestore last wrote the document, if read from there
 
     public LineItem() {
     }
@@ -28,6 +31,8 @@ public class LineItem extends Transition {
         this.currentStationId = lineItem.currentStationId;
         this.previousStationId = lineItem.previousStationId;
         this.state = lineItem.state;
+        this.version = lineItem.version;
+        this.updateTime = lineItem.updateTime;
     }
 
     public String getId() {
@@ -62,6 +67,30 @@ public class LineItem extends Transition {
         this.state = state;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @Exclude
+    public Timestamp getUpdateTime() {
+        return updateTime;
+    }
+
+    @Exclude
+    public void setUpdateTime(Timestamp updateTime) {
+        this.updateTime = updateTime;
+    }
+
+    // Makes this item a conditional write over the given one, as read from the store.
+    public void writeOver(LineItem readItem) {
+        this.version = readItem.version;
+        this.updateTime = readItem.updateTime;
+    }
+
     public void clearPreviousStation() {
         this.previousStationId = null;
     }
@@ -116,6 +145,7 @@ public class LineItem extends Transition {
                ", currentStationId='" + currentStationId + '\'' +
                ", previousStationId='" + previousStationId + '\'' +
                ", state=" + state +
+               ", version=" + version +
                '}';
     }
 }
@@ -0,0 +1,52 @@
+package com.svcline.models;
+
+// Counters of the line item cache since the instance started.
+public class LineItemCacheStats {
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long size;
+    private double hitRate;
+
+    public LineItemCacheStats() {
+    }
+
+    public LineItemCacheStats(long hits, long misses, long evictions, long size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        this.hitRate = hits + misses > 0 ? (double) hits / (hits + misses) : 0.0;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public double getHitRate() {
+        return hitRate;
+    }
+
+    @Override
+    public String toString() {
+        return "LineItemCacheStats{" +
+               "hits=" + hits +
+               ", misses=" + misses +
+               ", evictions=" + evictions +
+               ", size=" + size +
+               ", hitRate=" + hitRate +
+               '}';
+    }
+}
@@ -0,0 +1,41 @@
+package com.svcline.models;
+
+import java.util.ArrayList;
+
+// One page of line items. nextPageToken is passed as pageToken to get the following page, and is null on the last page.
+public class LineItemPage {
+    private ArrayList<LineItem> items;
+    private String nextPageToken;
+
+    public LineItemPage() {
+    }
+
+    public LineItemPage(ArrayList<LineItem> items, String nextPageToken) {
+        this.items = items;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public ArrayList<LineItem> getItems() {
+        return items;
+    }
+
+    public void setItems(ArrayList<LineItem> items) {
+        this.items = items;
+    }
+
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public void setNextPageToken(String nextPageToken) {
+        this.nextPageToken = nextPageToken;
+    }
+
+    @Override
+    public String toString() {
+        return "LineItemPage{" +
+               "items=" + items +
+               ", nextPageToken='" + nextPageToken + '\'' +
+               '}';
+    }
+}
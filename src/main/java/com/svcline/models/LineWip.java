@@ -0,0 +1,48 @@
+package com.svcline.models;
+
+import java.util.List;
+
+// The work in progress of the whole line, station by station.
+public class LineWip {
+    private String countedSince;
+    private boolean rebuilding;
+    private long inProgress;
+    private List<StationWip> stations;
+
+    public LineWip() {
+    }
+
+    public LineWip(String countedSince, boolean rebuilding, long inProgress, List<StationWip> stations) {
+        this.countedSince = countedSince;
+        this.rebuilding = rebuilding;
+        this.inProgress = inProgress;
+        this.stations = stations;
+    }
+
+    // When the counts were last rebuilt from the store, null if they never were
+    public String getCountedSince() {
+        return countedSince;
+    }
+
+    public boolean isRebuilding() {
+        return rebuilding;
+    }
+
+    public long getInProgress() {
+        return inProgress;
+    }
+
+    public List<StationWip> getStations() {
+        return stations;
+    }
+
+    @Override
+    public String toString() {
+        return "LineWip{" +
+               "countedSince='" + countedSince + '\'' +
+               ", rebuilding=" + rebuilding +
+               ", inProgress=" + inProgress +
+               ", stations=" + stations +
+               '}';
+    }
+}
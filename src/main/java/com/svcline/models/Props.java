@@ -5,10 +5,24 @@ import java.io.InputStream;
 import java.util.Properties;
 
 public class Props {
+    public static final String STORAGE_FIRESTORE = "firestore";
+    public static final String STORAGE_MEMORY = "memory";
+    public static final String CLOCKER_STORAGE_DOCUMENT = "document";
+    public static final String CLOCKER_STORAGE_EVENTS = "events";
+
     private String buttonColorBg;
     private String buttonColorTxt;
     private String currentlyLoadedConfiguration;
+    private String configurationSnapshot;
     private String environment;
+    private String storage;
+    private long itemCacheSize;
+    private long itemCacheTtl;
+    private int clockerQueueSize;
+    private String clockerStorage;
+    private String exportOutboxDir;
+    private boolean configurationWatched;
+    private long lineIdleMinutes;
     private final boolean timekeeping;
     private final boolean clocking;
 
@@ -22,11 +36,47 @@ public class Props {
         this.buttonColorBg = properties.getProperty("button.color.bg");
         this.buttonColorTxt = properties.getProperty("button.color.txt");
         this.currentlyLoadedConfiguration = properties.getProperty("line.configuration");
+        this.configurationSnapshot = properties.getProperty("line.configuration.snapshot");
         this.environment = properties.getProperty("environment");
+        this.storage = properties.getProperty("storage", STORAGE_FIRESTORE);
+        this.itemCacheSize = Long.parseLong(properties.getProperty("cache.items.size", "0").trim());
+        this.itemCacheTtl = Long.parseLong(properties.getProperty("cache.items.ttl", "60").trim());
+        this.clockerQueueSize = Integer.parseInt(properties.getProperty("clocker.queue.size", "10000").trim());
+        this.clockerStorage = properties.getProperty("clocker.storage", CLOCKER_STORAGE_DOCUMENT).trim();
+        this.exportOutboxDir = properties.getProperty("export.outbox.dir");
+        this.configurationWatched = properties.getProperty("line.configuration.watch", "false").trim().equalsIgnoreCase("true");
+        this.lineIdleMinutes = Long.parseLong(properties.getProperty("lines.idle.minutes", "30").trim());
         this.timekeeping = properties.getProperty("timekeeping").equalsIgnoreCase("true");
         this.clocking = properties.getProperty("clocking").equalsIgnoreCase("true");
     }
 
+    private Props(Props other) {
+        this.buttonColorBg = other.buttonColorBg;
+        this.buttonColorTxt = other.buttonColorTxt;
+        this.currentlyLoadedConfiguration = other.currentlyLoadedConfiguration;
+        this.configurationSnapshot = other.configurationSnapshot;
+        this.environment = other.environment;
+        this.storage = other.storage;
+        this.itemCacheSize = other.itemCacheSize;
+        this.itemCacheTtl = other.itemCacheTtl;
+        this.clockerQueueSize = other.clockerQueueSize;
+        this.clockerStorage = other.clockerStorage;
+        this.exportOutboxDir = other.exportOutboxDir;
+        this.configurationWatched = other.configurationWatched;
+        this.lineIdleMinutes = other.lineIdleMinutes;
+        this.timekeeping = other.timekeeping;
+        this.clocking = other.clocking;
+    }
+
+    // The same properties for the line of another configuration, which does not boot from the snapshot.
+    public Props forLine(String configId) {
+        Props props = new Props(this);
+        props.currentlyLoadedConfiguration = configId;
+        props.configurationSnapshot = null;
+
+        return props;
+    }
+
     public String getButtonColorBg() {
         return buttonColorBg;
     }
@@ -51,6 +101,15 @@ public class Props {
         this.currentlyLoadedConfiguration = currentlyLoadedConfiguration;
     }
 
+    // File path or classpath resource of a configuration to boot from, null if none
+    public String getConfigurationSnapshot() {
+        return configurationSnapshot;
+    }
+
+    public void setConfigurationSnapshot(String configurationSnapshot) {
+        this.configurationSnapshot = configurationSnapshot;
+    }
+
     public String getEnvironment() {
         return environment;
     }
@@ -63,6 +122,84 @@ public class Props {
         return environment.equalsIgnoreCase("live");
     }
 
+    public String getStorage() {
+        return storage;
+    }
+
+    public void setStorage(String storage) {
+        this.storage = storage;
+    }
+
+    public boolean isInMemoryStorage() {
+        return STORAGE_MEMORY.equalsIgnoreCase(storage);
+    }
+
+    public long getItemCacheSize() {
+        return itemCacheSize;
+    }
+
+    public void setItemCacheSize(long itemCacheSize) {
+        this.itemCacheSize = itemCacheSize;
+    }
+
+    // Seconds an item stays cached
+    public long getItemCacheTtl() {
+        return itemCacheTtl;
+    }
+
+    public void setItemCacheTtl(long itemCacheTtl) {
+        this.itemCacheTtl = itemCacheTtl;
+    }
+
+    // Clock events that may wait to be written
+    public int getClockerQueueSize() {
+        return clockerQueueSize;
+    }
+
+    public void setClockerQueueSize(int clockerQueueSize) {
+        this.clockerQueueSize = clockerQueueSize;
+    }
+
+    public String getClockerStorage() {
+        return clockerStorage;
+    }
+
+    public void setClockerStorage(String clockerStorage) {
+        this.clockerStorage = clockerStorage;
+    }
+
+    // Each timing is stored as a record of its own, instead of rewriting the clocker document
+    public boolean isClockerEventStorage() {
+        return CLOCKER_STORAGE_EVENTS.equalsIgnoreCase(clockerStorage);
+    }
+
+    // Configuration changes are pushed to the line while it runs, see ConfigurationReloader
+    public boolean isConfigurationWatched() {
+        return configurationWatched;
+    }
+
+    public void setConfigurationWatched(boolean configurationWatched) {
+        this.configurationWatched = configurationWatched;
+    }
+
+    // Lines other than the default one are closed after this long without a request, see LineRegistry
+    public long getLineIdleMinutes() {
+        return lineIdleMinutes;
+    }
+
+    public void setLineIdleMinutes(long lineIdleMinutes) {
+        this.lineIdleMinutes = lineIdleMinutes;
+    }
+
+    // Directory of the BigQuery export outbox, null to keep export rows in memory only
+    public String getExportOutboxDir() {
+        return exportOutboxDir;
+    }
+
+    public void setExportOutboxDir(String exportOutboxDir) {
+        this.exportOutboxDir = exportOutboxDir;
+    }
+
     public boolean isTimekeeping() {
         return timekeeping;
     }
@@ -78,7 +215,16 @@ public class Props {
                "buttonColorBg='" + buttonColorBg + '\'' +
                ", buttonColorTxt='" + buttonColorTxt + '\'' +
                ", currentlyLoadedConfiguration='" + currentlyLoadedConfiguration + '\'' +
+               ", configurationSnapshot='" + configurationSnapshot + '\'' +
                ", environment='" + environment + '\'' +
+               ", storage='" + storage + '\'' +
+               ", itemCacheSize=" + itemCacheSize +
+               ", itemCacheTtl=" + itemCacheTtl +
+               ", clockerQueueSize=" + clockerQueueSize +
+               ", clockerStorage='" + clockerStorage + '\'' +
+               ", exportOutboxDir='" + exportOutboxDir + '\'' +
+               ", configurationWatched=" + configurationWatched +
+               ", lineIdleMinutes=" + lineIdleMinutes +
                ", timekeeping=" + timekeeping +
                '}';
     }
@@ -0,0 +1,81 @@
+package com.svcline.models;
+
+// Where a recompute job is, written as its checkpoint after every page, see RecomputeJob.
+public class RecomputeProgress {
+    private long pages;
+    private long clockers;
+    private long rows;
+    private long skipped;
+    private long failed;
+    private String pageToken;
+    private boolean done;
+
+    public RecomputeProgress() {
+    }
+
+    public RecomputeProgress(RecomputeProgress other) {
+        this.pages = other.pages;
+        this.clockers = other.clockers;
+        this.rows = other.rows;
+        this.skipped = other.skipped;
+        this.failed = other.failed;
+        this.pageToken = other.pageToken;
+        this.done = other.done;
+    }
+
+    // Counts a written page, and moves to the next one. A null token means the page was the last.
+    public void pageWritten(long clockers, long rows, long skipped, long failed, String nextPageToken) {
+        this.pages++;
+        this.clockers += clockers;
+        this.rows += rows;
+        this.skipped += skipped;
+        this.failed += failed;
+        this.pageToken = nextPageToken;
+        this.done = nextPageToken == null;
+    }
+
+    // Pages written, which is also the number of the last rows file
+    public long getPages() {
+        return pages;
+    }
+
+    public long getClockers() {
+        return clockers;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    // Clockers of items that did not finish
+    public long getSkipped() {
+        return skipped;
+    }
+
+    // Clockers whose row could not be computed, they are logged
+    public long getFailed() {
+        return failed;
+    }
+
+    // The token of the next page to read, null for the first page or once done
+    public String getPageToken() {
+        return pageToken;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public String toString() {
+        return "RecomputeProgress{" +
+               "pages=" + pages +
+               ", clockers=" + clockers +
+               ", rows=" + rows +
+               ", skipped=" + skipped +
+               ", failed=" + failed +
+               ", pageToken='" + pageToken + '\'' +
+               ", done=" + done +
+               '}';
+    }
+}
@@ -0,0 +1,42 @@
+package com.svcline.models;
+
+import java.util.List;
+
+// Where to send an item that passed a station, see ProductionLine.dispatch.
+public class StationDispatch {
+    private String fromStationId;
+    private String stationId;
+    private List<StationLoad> stations;
+
+    public StationDispatch() {
+    }
+
+    public StationDispatch(String fromStationId, String stationId, List<StationLoad> stations) {
+        this.fromStationId = fromStationId;
+        this.stationId = stationId;
+        this.stations = stations;
+    }
+
+    public String getFromStationId() {
+        return fromStationId;
+    }
+
+    // Null after the end station
+    public String getStationId() {
+        return stationId;
+    }
+
+    // The stations of the next pool that were weighed
+    public List<StationLoad> getStations() {
+        return stations;
+    }
+
+    @Override
+    public String toString() {
+        return "StationDispatch{" +
+               "fromStationId='" + fromStationId + '\'' +
+               ", stationId='" + stationId + '\'' +
+               ", stations=" + stations +
+               '}';
+    }
+}
@@ -0,0 +1,55 @@
+package com.svcline.models;
+
+// The work waiting at a station of a pool, see ProductionLine.dispatch.
+public class StationLoad {
+    private String stationId;
+    private long working;
+    private Double productionTime;
+    private boolean measured;
+    private Double freeIn;
+
+    public StationLoad() {
+    }
+
+    public StationLoad(String stationId, long working, Double productionTime, boolean measured, Double freeIn) {
+        this.stationId = stationId;
+        this.working = working;
+        this.productionTime = productionTime;
+        this.measured = measured;
+        this.freeIn = freeIn;
+    }
+
+    public String getStationId() {
+        return stationId;
+    }
+
+    // Items started at the station or retried there
+    public long getWorking() {
+        return working;
+    }
+
+    // In seconds, measured on this instance or else estimated in the configuration. Null if neither is known.
+    public Double getProductionTime() {
+        return productionTime;
+    }
+
+    public boolean isMeasured() {
+        return measured;
+    }
+
+    // Seconds until a new item would be done at the station, or null without a production time
+    public Double getFreeIn() {
+        return freeIn;
+    }
+
+    @Override
+    public String toString() {
+        return "StationLoad{" +
+               "stationId='" + stationId + '\'' +
+               ", working=" + working +
+               ", productionTime=" + productionTime +
+               ", measured=" + measured +
+               ", freeIn=" + freeIn +
+               '}';
+    }
+}
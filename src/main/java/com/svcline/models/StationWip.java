@@ -0,0 +1,41 @@
+package com.svcline.models;
+
+import java.util.EnumMap;
+
+// The items at a station by their state, see WorkInProgress.
+public class StationWip {
+    private String stationId;
+    private EnumMap<State, Long> states;
+    private long inProgress;
+
+    public StationWip() {
+    }
+
+    public StationWip(String stationId, EnumMap<State, Long> states, long inProgress) {
+        this.stationId = stationId;
+        this.states = states;
+        this.inProgress = inProgress;
+    }
+
+    public String getStationId() {
+        return stationId;
+    }
+
+    public EnumMap<State, Long> getStates() {
+        return states;
+    }
+
+    // Items neither finished nor scrapped
+    public long getInProgress() {
+        return inProgress;
+    }
+
+    @Override
+    public String toString() {
+        return "StationWip{" +
+               "stationId='" + stationId + '\'' +
+               ", states=" + states +
+               ", inProgress=" + inProgress +
+               '}';
+    }
+}
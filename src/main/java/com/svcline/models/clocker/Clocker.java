@@ -3,8 +3,10 @@ package com.svcline.models.clocker;
 import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.annotation.Exclude;
 import com.svcline.prodline.ProductLineConfiguration;
+import com.svcline.prodline.StationIndex;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class Clocker {
     protected String itemId;
@@ -22,6 +24,18 @@ public class Clocker {
         this.timekeeping = timekeeping;
     }
 
+    // Copies the clocker with its own times list, the timings themselves are shared.
+    public Clocker(Clocker from) {
+        this.itemId = from.itemId;
+        this.plConfiguration = from.plConfiguration;
+        this.timekeeping = from.timekeeping;
+        this.timesList = new ArrayList<>(from.timesList.size());
+
+        for (Times times : from.timesList) {
+            this.timesList.add(new Times(times.getStationId(), new ArrayList<>(times.getTimingList())));
+        }
+    }
+
     public String getItemId() {
         return itemId;
     }
@@ -60,7 +74,12 @@ public class Clocker {
 
     @Exclude
     public void addTime(String stationId, Operation operation) {
-        Timing timing = new Timing(operation, Timestamp.now());
+        addTime(stationId, operation, Timestamp.now());
+    }
+
+    @Exclude
+    public void addTime(String stationId, Operation operation, Timestamp timestamp) {
+        Timing timing = new Timing(operation, timestamp);
 
         if (timesList.size() == 0) {
             Times current = new Times(stationId);
@@ -86,6 +105,27 @@ public class Clocker {
         }
     }
 
+    /* Adds the timings in order. Timings the clocker refuses, like a second start at a station, are skipped and returned.
+     * The timings are added to a ClockerTimeline, which finds the station of a timing without scanning the times list,
+     * and the times list is built from it once. Long lists of timings, as read from the event store, stay linear.
+     */
+    @Exclude
+    public List<StationTiming> addTimes(List<StationTiming> timings) {
+        ArrayList<StationTiming> skipped = new ArrayList<>();
+        ClockerTimeline timeline = ClockerTimeline.of(this, StationIndex.of(plConfiguration));
+
+        for (StationTiming timing : timings) {
+            try {
+                timeline.add(timing.getStationId(), timing.getOperation(), timing.getTimestamp());
+            } catch (IllegalArgumentException e) {
+                skipped.add(timing);
+            }
+        }
+
+        this.timesList = timeline.toTimesList();
+        return skipped;
+    }
+
     @Exclude
     public boolean isTimekeeping() {
         return timekeeping;
@@ -0,0 +1,41 @@
+package com.svcline.models.clocker;
+
+import java.util.ArrayList;
+
+// One page of clockers. nextPageToken is passed as pageToken to get the following page, and is null on the last page.
+public class ClockerPage {
+    private ArrayList<Clocker> clockers;
+    private String nextPageToken;
+
+    public ClockerPage() {
+    }
+
+    public ClockerPage(ArrayList<Clocker> clockers, String nextPageToken) {
+        this.clockers = clockers;
+        this.nextPageToken = nextPageToken;
+    }
+
+    public ArrayList<Clocker> getClockers() {
+        return clockers;
+    }
+
+    public void setClockers(ArrayList<Clocker> clockers) {
+        this.clockers = clockers;
+    }
+
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public void setNextPageToken(String nextPageToken) {
+        this.nextPageToken = nextPageToken;
+    }
+
+    @Override
+    public String toString() {
+        return "ClockerPage{" +
+               "clockers=" + clockers +
+               ", nextPageToken='" + nextPageToken + '\'' +
+               '}';
+    }
+}
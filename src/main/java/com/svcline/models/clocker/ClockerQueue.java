@@ -0,0 +1,301 @@
+package com.svcline.models.clocker;
+
+import com.google.cloud.Timestamp;
+import com.svcline.models.ClockerQueueStats;
+import com.svcline.models.clocker.bq.BigQueryExporter;
+import com.svcline.prodline.ProductionLine;
+import com.svcline.store.ClockerStore;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.svcline.store.StoreFutures.unwrap;
+
+/* Clock events wait here to be written to the clocker store by a background worker, so requests do not wait for it.
+ * 1. The queue is bounded by the number of events. A request reserves room for its events before it moves any item,
+ *    waiting a while if the queue is full, and is turned away if it stays full. Moved items can always be clocked.
+ * 2. The worker writes in rounds. The events queued for an item are appended to its clocker in one call, see
+ *    ClockerStore.append, and the items of a round are written concurrently. As an item is in one round at a time,
+ *    its appends never overlap.
+ * 3. When the JVM shuts down, the worker writes what is queued before it exits, for a limited time.
+ * There is one queue per clocker store, see ClockerQueue.of.
+ */
+public class ClockerQueue {
+    private static final Logger logger = Logger.getLogger(ClockerQueue.class.getName());
+    private static final ConcurrentHashMap<ClockerStore, ClockerQueue> queues = new ConcurrentHashMap<>();
+
+    private static final int MAX_ITEMS_PER_ROUND = 100;
+    private static final long RESERVE_TIMEOUT_MS = 1_000;
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    // Clocks nothing, for when clocking is off
+    public static final Ticket NO_CLOCKING = new Ticket(null, 0);
+
+    private final ClockerStore clockerStore;
+    private final int capacity;
+    private final Semaphore room;
+    private final Thread worker;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition queued = lock.newCondition();
+    private final LinkedHashMap<String, ArrayList<ClockEvent>> pending = new LinkedHashMap<>();    // By item, in order of arrival
+    private final ArrayList<CompletableFuture<Void>> flushes = new ArrayList<>();
+    private boolean writing = false;
+    private boolean closed = false;
+
+    private final LongAdder writtenEvents = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder failedEvents = new LongAdder();
+    private final LongAdder rejectedReservations = new LongAdder();
+
+    private static final class ClockEvent {
+        private final ProductionLine productionLine;
+        private final StationTiming timing;
+
+        private ClockEvent(ProductionLine productionLine, StationTiming timing) {
+            this.productionLine = productionLine;
+            this.timing = timing;
+        }
+
+        // The item is exported to BigQuery once it stopped at the end station
+        private boolean finishesItem() {
+            return timing.getOperation() == Operation.STOP && timing.getStationId().equals(productionLine.getEndStationId());
+        }
+    }
+
+    // Room reserved for the clock events of one request. Events not clocked must be given back with release.
+    public static final class Ticket {
+        private final ClockerQueue queue;
+        private int events;
+
+        private Ticket(ClockerQueue queue, int events) {
+            this.queue = queue;
+            this.events = events;
+        }
+
+        // Queues an event, in the room of one of the reserved events.
+        public void clock(ProductionLine productionLine, String itemId, String stationId, Operation operation, Timestamp timestamp) {
+            if (queue == null)
+                return;
+            else if (events == 0)
+                throw new IllegalStateException("All reserved clock events are used.");
+
+            events--;
+            queue.enqueue(itemId, new ClockEvent(productionLine, new StationTiming(stationId, operation, timestamp)));
+        }
+
+        public void release() {
+            if (queue != null && events > 0) {
+                queue.room.release(events);
+                events = 0;
+            }
+        }
+    }
+
+    private ClockerQueue(ClockerStore clockerStore, int capacity) {
+        this.clockerStore = clockerStore;
+        this.capacity = capacity;
+        this.room = new Semaphore(capacity, true);
+
+        this.worker = new Thread(this::run, "clocker-queue");
+        this.worker.setDaemon(true);
+        this.worker.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> close(SHUTDOWN_TIMEOUT_MS), "clocker-queue-shutdown"));
+    }
+
+    // The capacity is taken from the first call for a store.
+    public static ClockerQueue of(ClockerStore clockerStore, int capacity) {
+        return queues.computeIfAbsent(clockerStore, store -> new ClockerQueue(store, capacity));
+    }
+
+    // Returns null if nothing was clocked to the store yet.
+    public static ClockerQueue find(ClockerStore clockerStore) {
+        return queues.get(clockerStore);
+    }
+
+    // Waits for room for the events for a while. Throws RejectedExecutionException if there is none.
+    public Ticket reserve(int events) {
+        if (events > capacity)
+            throw new IllegalArgumentException("Cannot reserve more than " + capacity + " clock events.");
+
+        try {
+            if (!room.tryAcquire(events, RESERVE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                rejectedReservations.increment();
+                throw new RejectedExecutionException("Clocking is behind, try again later.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for the clocker queue.", e);
+        }
+
+        return new Ticket(this, events);
+    }
+
+    // Completes once the queue ran empty and nothing is being written, which means every event queued before is stored.
+    public CompletableFuture<Void> flush() {
+        lock.lock();
+        try {
+            if (pending.isEmpty() && !writing)
+                return CompletableFuture.completedFuture(null);
+
+            CompletableFuture<Void> flush = new CompletableFuture<>();
+            flushes.add(flush);
+            return flush;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public ClockerQueueStats getStats() {
+        int pendingItems;
+        lock.lock();
+        try {
+            pendingItems = pending.size();
+        } finally {
+            lock.unlock();
+        }
+
+        return new ClockerQueueStats(capacity, capacity - room.availablePermits(), pendingItems, writtenEvents.sum(),
+                                     writes.sum(), failedEvents.sum(), rejectedReservations.sum());
+    }
+
+    private void enqueue(String itemId, ClockEvent event) {
+        lock.lock();
+        try {
+            if (closed) {
+                logger.warning("Clocker queue closed, dropped " + event.timing.getOperation() + " at " + event.timing.getStationId() + " for item " + itemId + ".");
+                failedEvents.increment();
+                room.release();
+                return;
+            }
+
+            pending.computeIfAbsent(itemId, k -> new ArrayList<>()).add(event);
+            queued.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            LinkedHashMap<String, ArrayList<ClockEvent>> round = new LinkedHashMap<>();
+
+            lock.lock();
+            try {
+                writing = false;
+                while (pending.isEmpty()) {
+                    // Everything queued is written. Flushes complete on another thread, the worker must not run their stages.
+                    flushes.forEach(flush -> flush.completeAsync(() -> null));
+                    flushes.clear();
+
+                    if (closed)
+                        return;
+
+                    queued.awaitUninterruptibly();
+                }
+
+                Iterator<Map.Entry<String, ArrayList<ClockEvent>>> it = pending.entrySet().iterator();
+                while (it.hasNext() && round.size() < MAX_ITEMS_PER_ROUND) {
+                    Map.Entry<String, ArrayList<ClockEvent>> entry = it.next();
+                    round.put(entry.getKey(), entry.getValue());
+                    it.remove();
+                }
+                writing = true;
+            } finally {
+                lock.unlock();
+            }
+
+            write(round);
+        }
+    }
+
+    private void write(LinkedHashMap<String, ArrayList<ClockEvent>> round) {
+        CompletableFuture<?>[] written = new CompletableFuture<?>[round.size()];
+
+        int i = 0;
+        for (Map.Entry<String, ArrayList<ClockEvent>> entry : round.entrySet()) {
+            String itemId = entry.getKey();
+            ArrayList<ClockEvent> events = entry.getValue();
+
+            written[i++] = CompletableFuture.completedFuture(null)
+                    .thenCompose(start -> write(itemId, events))
+                    .handle((done, t) -> {
+                        if (t != null) {
+                            logger.log(Level.SEVERE, "Failed to clock " + events.size() + " events for item " + itemId + ".", unwrap(t));
+                            failedEvents.add(events.size());
+                        }
+
+                        room.release(events.size());
+                        return null;
+                    });
+        }
+
+        // Failures are handled per item, this only waits for the round to end
+        CompletableFuture.allOf(written).join();
+    }
+
+    private CompletableFuture<Void> write(String itemId, ArrayList<ClockEvent> events) {
+        ProductionLine productionLine = events.get(0).productionLine;
+        Clocker newClocker = new Clocker(itemId, productionLine.getProductLineConfiguration(), productionLine.getProps().isTimekeeping());
+        List<StationTiming> timings = new ArrayList<>(events.size());
+        ClockEvent finishing = null;
+
+        for (ClockEvent event : events) {
+            timings.add(event.timing);
+
+            if (event.finishesItem())
+                finishing = event;
+        }
+
+        CompletableFuture<Void> written = clockerStore.append(newClocker, timings).thenRun(() -> {
+            writtenEvents.add(events.size());
+            writes.increment();
+        });
+
+        // The finished clocker is read back and handed to the exporter, which sends it to BigQuery on its own.
+        if (finishing != null && finishing.productionLine.getProps().isTimekeeping()) {
+            ProductionLine exportLine = finishing.productionLine;
+            written.thenCompose(done -> clockerStore.getFor(itemId))
+                   .thenAccept(clocker -> BigQueryExporter.of(exportLine.getProps()).export(exportLine, clocker))
+                   .exceptionally(t -> {
+                       logger.log(Level.SEVERE, "Failed to export item " + itemId + " to BigQuery.", unwrap(t));
+                       return null;
+                   });
+        }
+
+        return written;
+    }
+
+    private void close(long timeoutMs) {
+        lock.lock();
+        try {
+            closed = true;
+            queued.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            worker.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (worker.isAlive())
+            logger.warning("Clocker queue not flushed on shutdown, " + getStats().getQueuedEvents() + " events were not written.");
+    }
+}
@@ -1,52 +1,59 @@
 package com.svcline.models.clocker;
 
-import com.svcline.models.clocker.bq.BigQueryService;
-import com.svcline.models.clocker.db.DbClockerFacade;
+import com.google.cloud.Timestamp;
 import com.svcline.prodline.ProductionLine;
+import com.svcline.store.ClockerStore;
 
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
+// Clocks items through the clocker queue of the store, see ClockerQueue.
 public class ClockerService {
     private static final Logger logger = Logger.getLogger(ClockerService.class.getName());
     private ProductionLine productionLine;
+    private ClockerStore clockerStore;
 
     public ClockerService() {
     }
 
     public ClockerService(ProductionLine productionLine) {
-        this.productionLine = productionLine;
+        this(productionLine, productionLine.getStores().getClockerStore());
     }
 
-    public void setTime(String itemId, String stationId, Operation operation) throws ExecutionException, InterruptedException {
-        if(!this.productionLine.getProps().isClocking())
-            return;
+    public ClockerService(ProductionLine productionLine, ClockerStore clockerStore) {
+        this.productionLine = productionLine;
+        this.clockerStore = clockerStore;
+    }
 
-        DbClockerFacade dbClockerFacade = new DbClockerFacade(this.productionLine.getFirestore(), this.productionLine.getProps().isLiveEnv());
+    // Reserves room for the clock events of a request, to be clocked with setTime. Throws RejectedExecutionException
+    // if the queue is full, in which case the request should not move any item.
+    public ClockerQueue.Ticket reserve(int events) {
+        if (!this.productionLine.getProps().isClocking())
+            return ClockerQueue.NO_CLOCKING;
 
-        Clocker clocker = dbClockerFacade.getFor(itemId);
-        if (clocker == null) {
-            clocker = new Clocker(itemId, this.productionLine.getProductLineConfiguration(), this.productionLine.getProps().isTimekeeping());
-        }
-        clocker.addTime(stationId, operation);
+        return ClockerQueue.of(clockerStore, productionLine.getProps().getClockerQueueSize()).reserve(events);
+    }
 
-        dbClockerFacade.set(clocker);
+    // Queues the time, it is written in the background. The station times of the line are fed with it at once.
+    public void setTime(ClockerQueue.Ticket ticket, String itemId, String stationId, Operation operation) {
+        Timestamp now = Timestamp.now();
 
-        // We export the data to BQ only if we're at the final station and if it's the final operation
-        if (stationId.equals(this.productionLine.getEndStationId()) && operation == Operation.STOP) {
-            BigQueryService bqs = new BigQueryService(productionLine);
-            bqs.insertEntry(clocker);
-        }
+        ticket.clock(this.productionLine, itemId, stationId, operation, now);
+        long productionTimeMs = this.productionLine.getStationLatencies().record(itemId, stationId, operation, now);
+        this.productionLine.getTaktEstimator().record(this.productionLine, itemId, stationId, operation, now, productionTimeMs);
     }
 
-    public void deleteFor(String itemId) throws ExecutionException, InterruptedException {
+    // Queued times are written first, so that none of them brings the clocker back.
+    public CompletableFuture<Void> deleteFor(String itemId) {
         if (this.productionLine.getProps().isLiveEnv()) {
             logger.info("Not allowed to delete entry in production.");
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
-        DbClockerFacade dbClockerFacade = new DbClockerFacade(this.productionLine.getFirestore(), false);
+        ClockerQueue clockerQueue = ClockerQueue.find(clockerStore);
+        if (clockerQueue == null)
+            return clockerStore.deleteFor(itemId);
 
-        dbClockerFacade.deleteFor(itemId);
+        return clockerQueue.flush().thenCompose(done -> clockerStore.deleteFor(itemId));
     }
 }
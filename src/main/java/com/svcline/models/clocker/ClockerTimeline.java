@@ -0,0 +1,170 @@
+package com.svcline.models.clocker;
+
+import com.google.cloud.Timestamp;
+import com.svcline.prodline.StationIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+
+/* The times of a clocker in primitive arrays, for clockers that take many timings at once.
+ * 1. Every station the item visited has a slot, numbered in the order of the first visit like the times list. The
+ *    slot of a station is found through its number in the StationIndex, stations the configuration does not know
+ *    are numbered after those.
+ * 2. The START and STOP of a slot are kept as epoch nanos in two long arrays, and whether they were clocked in a
+ *    bitset, two bits per slot. Adding a timing is O(1), where the times list scans its stations and timings.
+ * 3. The rules are those of Times.addUniqueTiming: one START and one STOP per station, and the STOP after the START.
+ * A timeline is built from a clocker and written back to it, the stored shape of clockers stays the times list.
+ */
+public class ClockerTimeline {
+    private static final int OPERATIONS = Operation.values().length;
+
+    private final StationIndex stationIndex;
+    private final HashMap<String, Integer> unknownStations = new HashMap<>();
+    private int[] slotOfStation;
+    private String[] stationIds;
+    private long[] starts;
+    private long[] stops;
+    private final BitSet clocked = new BitSet();
+    private int slots = 0;
+
+    public ClockerTimeline(StationIndex stationIndex) {
+        this.stationIndex = stationIndex;
+        this.slotOfStation = new int[Math.max(stationIndex.size(), 1)];
+        Arrays.fill(slotOfStation, -1);
+
+        int capacity = Math.max(stationIndex.size(), 4);
+        this.stationIds = new String[capacity];
+        this.starts = new long[capacity];
+        this.stops = new long[capacity];
+    }
+
+    // Timings the clocker holds but the timeline refuses are left out, they cannot be in a clocker written by addTime.
+    public static ClockerTimeline of(Clocker clocker, StationIndex stationIndex) {
+        ClockerTimeline timeline = new ClockerTimeline(stationIndex);
+
+        for (Times times : clocker.getTimesList()) {
+            for (Timing timing : times.getTimingList()) {
+                try {
+                    timeline.add(times.getStationId(), timing.getOperation(), timing.getTimestamp());
+                } catch (IllegalArgumentException e) {
+                    // Stored by hand or by an older version, there is no timing to keep it as
+                }
+            }
+        }
+
+        return timeline;
+    }
+
+    // Throws IllegalArgumentException for a timing the station has already, or a STOP without a START.
+    public void add(String stationId, Operation operation, Timestamp timestamp) {
+        if (stationId == null || operation == null || timestamp == null)
+            throw new IllegalArgumentException("Incorrect timing value provided for addition.");
+
+        int station = stationNumberOf(stationId);
+        int slot = station < slotOfStation.length ? slotOfStation[station] : -1;
+
+        if (slot >= 0 && clocked.get(bitOf(slot, operation)))
+            throw new IllegalArgumentException("Operation exists for station: " + stationIds[slot]);
+        if (operation == Operation.STOP && (slot < 0 || !clocked.get(bitOf(slot, Operation.START))))
+            throw new IllegalArgumentException("Operation has not been prepared.");
+
+        if (slot < 0)
+            slot = newSlot(station, stationId);
+
+        long epochNanos = toEpochNanos(timestamp);
+        if (operation == Operation.START)
+            starts[slot] = epochNanos;
+        else
+            stops[slot] = epochNanos;
+
+        clocked.set(bitOf(slot, operation));
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public String getStationIdAt(int slot) {
+        return stationIds[slot];
+    }
+
+    public boolean isClocked(int slot, Operation operation) {
+        return clocked.get(bitOf(slot, operation));
+    }
+
+    // Epoch nanos, 0 if not clocked.
+    public long getStartAt(int slot) {
+        return starts[slot];
+    }
+
+    public long getStopAt(int slot) {
+        return stops[slot];
+    }
+
+    // The times list of the timeline, with new Times and Timing objects.
+    public ArrayList<Times> toTimesList() {
+        ArrayList<Times> timesList = new ArrayList<>(slots);
+
+        for (int slot = 0; slot < slots; slot++) {
+            ArrayList<Timing> timingList = new ArrayList<>(OPERATIONS);
+            if (isClocked(slot, Operation.START))
+                timingList.add(new Timing(Operation.START, toTimestamp(starts[slot])));
+            if (isClocked(slot, Operation.STOP))
+                timingList.add(new Timing(Operation.STOP, toTimestamp(stops[slot])));
+
+            timesList.add(new Times(stationIds[slot], timingList));
+        }
+
+        return timesList;
+    }
+
+    private int stationNumberOf(String stationId) {
+        int station = stationIndex.indexOf(stationId);
+        if (station >= 0)
+            return station;
+
+        String key = stationId.toLowerCase(Locale.ROOT);
+        Integer unknown = unknownStations.get(key);
+        if (unknown == null) {
+            unknown = stationIndex.size() + unknownStations.size();
+            unknownStations.put(key, unknown);
+        }
+
+        return unknown;
+    }
+
+    private int newSlot(int station, String stationId) {
+        if (station >= slotOfStation.length) {
+            int length = slotOfStation.length;
+            slotOfStation = Arrays.copyOf(slotOfStation, Math.max(station + 1, length * 2));
+            Arrays.fill(slotOfStation, length, slotOfStation.length, -1);
+        }
+
+        if (slots == stationIds.length) {
+            stationIds = Arrays.copyOf(stationIds, slots * 2);
+            starts = Arrays.copyOf(starts, slots * 2);
+            stops = Arrays.copyOf(stops, slots * 2);
+        }
+
+        stationIds[slots] = stationId;
+        slotOfStation[station] = slots;
+
+        return slots++;
+    }
+
+    private static int bitOf(int slot, Operation operation) {
+        return slot * OPERATIONS + operation.getValue();
+    }
+
+    // Nanos since the epoch fit a long until the year 2262
+    private static long toEpochNanos(Timestamp timestamp) {
+        return timestamp.getSeconds() * 1_000_000_000L + timestamp.getNanos();
+    }
+
+    private static Timestamp toTimestamp(long epochNanos) {
+        return Timestamp.ofTimeSecondsAndNanos(Math.floorDiv(epochNanos, 1_000_000_000L), (int) Math.floorMod(epochNanos, 1_000_000_000L));
+    }
+}
@@ -0,0 +1,52 @@
+package com.svcline.models.clocker;
+
+import com.google.cloud.Timestamp;
+
+// A single timing at a station, the record clockers are built from when they are stored as events.
+public class StationTiming {
+    private String stationId;
+    private Operation operation;
+    private Timestamp timestamp;
+
+    public StationTiming() {
+    }
+
+    public StationTiming(String stationId, Operation operation, Timestamp timestamp) {
+        this.stationId = stationId;
+        this.operation = operation;
+        this.timestamp = timestamp;
+    }
+
+    public String getStationId() {
+        return stationId;
+    }
+
+    public void setStationId(String stationId) {
+        this.stationId = stationId;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public void setOperation(Operation operation) {
+        this.operation = operation;
+    }
+
+    public Timestamp getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Timestamp timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "StationTiming{" +
+               "stationId='" + stationId + '\'' +
+               ", operation=" + operation +
+               ", timestamp=" + timestamp +
+               '}';
+    }
+}
@@ -0,0 +1,365 @@
+package com.svcline.models.clocker.bq;
+
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.InsertAllRequest;
+import com.svcline.models.BigQueryExportStats;
+import com.svcline.models.Props;
+import com.svcline.models.clocker.Clocker;
+import com.svcline.prodline.ProductionLine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/* Exports the rows of finished items to BigQuery in batches, over one client for the instance.
+ * 1. Rows are buffered and sent with a single insertAll once MAX_ROWS_PER_FLUSH are buffered, or once the oldest of
+ *    them waited FLUSH_INTERVAL_MS. A single thread sends them, callers never wait for BigQuery.
+ * 2. Rows that fail, alone or with their whole request, are sent again later, waiting twice as long after every
+ *    attempt. After MAX_ATTEMPTS a row is given up on and moved to the dead-letter buffer, and logged with its content.
+ * 3. The buffer is bounded. Rows that find it full go to the dead-letter buffer, which keeps the latest rows only.
+ * 4. When the JVM shuts down, the rows held are sent once more, for a limited time.
+ * With an outbox, see ExportOutbox, rows are appended to it instead of being buffered, and shipped from it in order.
+ * Rows only buffered in memory are those the outbox failed to take.
+ * There is one exporter per table, see BigQueryExporter.of.
+ */
+public class BigQueryExporter {
+    private static final Logger logger = Logger.getLogger(BigQueryExporter.class.getName());
+    private static final ConcurrentHashMap<String, BigQueryExporter> exporters = new ConcurrentHashMap<>();
+
+    private static final int MAX_ROWS_PER_FLUSH = 500;
+    private static final long FLUSH_INTERVAL_MS = 2_000;
+    private static final long TICK_MS = 250;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long INITIAL_BACKOFF_MS = 1_000;
+    private static final long MAX_BACKOFF_MS = 60_000;
+    private static final int MAX_BUFFERED_ROWS = 10_000;
+    private static final int DEAD_LETTER_CAPACITY = 1_000;
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final RowSink sink;
+    private final ExportOutbox outbox;      // Null if rows are only buffered in memory
+    private final ScheduledExecutorService sender;
+
+    // The outbox batch being shipped, only used by the sender thread
+    private ExportOutbox.Batch outboxBatch = null;
+    private List<PendingRow> outboxRows = null;
+    private long outboxRetryAt = 0;
+    private int outboxFailures = 0;     // Sends of the batch in a row that failed
+
+    // Guarded by this
+    private final ArrayDeque<PendingRow> buffered = new ArrayDeque<>();
+    private final ArrayList<PendingRow> retrying = new ArrayList<>();
+    private final ArrayDeque<PendingRow> deadLetters = new ArrayDeque<>();
+    private boolean flushRequested = false;
+    private boolean closing = false;
+    private long exportedRows = 0;
+    private long retriedRows = 0;
+    private long deadLetteredRows = 0;
+    private long flushes = 0;
+    private long lastFlushMs = 0;
+    private long maxFlushMs = 0;
+    private long totalFlushMs = 0;
+
+    private static final class PendingRow {
+        private final InsertAllRequest.RowToInsert row;
+        private final long bufferedAt;
+        private int attempts = 0;
+        private long dueAt = 0;
+
+        private PendingRow(InsertAllRequest.RowToInsert row, long bufferedAt) {
+            this.row = row;
+            this.bufferedAt = bufferedAt;
+        }
+    }
+
+    public BigQueryExporter(RowSink sink) {
+        this(sink, null);
+    }
+
+    public BigQueryExporter(RowSink sink, ExportOutbox outbox) {
+        this.sink = sink;
+        this.outbox = outbox;
+        this.sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bigquery-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        sender.scheduleWithFixedDelay(this::flushReady, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> close(SHUTDOWN_TIMEOUT_MS), "bigquery-exporter-shutdown"));
+    }
+
+    /* The exporter of the table of the environment. The BigQuery client is built on the first call, which takes a
+     * while. Rows go through an outbox in the directory of the "export.outbox.dir" property, if it is set. When the
+     * outbox cannot be opened, rows are buffered in memory only.
+     */
+    public static BigQueryExporter of(Props props) {
+        return exporters.computeIfAbsent(BigQueryService.tableFor(props), table -> {
+            BigQueryService bigQuery;
+            try {
+                bigQuery = new BigQueryService(props);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to create BigQuery client for table " + table + ".", e);
+            }
+
+            ExportOutbox outbox = null;
+            if (props.getExportOutboxDir() != null) {
+                try {
+                    outbox = new ExportOutbox(Path.of(props.getExportOutboxDir(), table));
+                } catch (IOException | RuntimeException e) {
+                    logger.log(Level.SEVERE, "Failed to open the export outbox, rows are kept in memory only.", e);
+                }
+            }
+
+            return new BigQueryExporter(bigQuery, outbox);
+        });
+    }
+
+    // Returns null if nothing was exported to the table yet.
+    public static BigQueryExporter find(Props props) {
+        return exporters.get(BigQueryService.tableFor(props));
+    }
+
+    // Buffers the row of a finished item, see BigQueryService.rowOf. The item id doubles as the row id.
+    public void export(ProductionLine productionLine, Clocker clocker) {
+        export(clocker.getItemId(), BigQueryService.rowOf(productionLine, clocker));
+    }
+
+    public void export(String rowId, Map<String, Object> content) {
+        PendingRow pending = new PendingRow(InsertAllRequest.RowToInsert.of(rowId, content), System.currentTimeMillis());
+
+        if (outbox == null) {
+            buffer(pending);
+            return;
+        }
+
+        outbox.append(rowId, content).exceptionally(t -> {
+            logger.log(Level.WARNING, "Failed to append row " + rowId + " to the export outbox, it is kept in memory.", t);
+            buffer(pending);
+            return null;
+        });
+    }
+
+    private void buffer(PendingRow pending) {
+        boolean full;
+        boolean requestFlush = false;
+
+        synchronized (this) {
+            full = buffered.size() + retrying.size() >= MAX_BUFFERED_ROWS;
+            if (!full) {
+                buffered.add(pending);
+                requestFlush = buffered.size() >= MAX_ROWS_PER_FLUSH && !flushRequested;
+                flushRequested |= requestFlush;
+            }
+        }
+
+        if (full)
+            deadLetter(pending, "the export buffer is full");
+        else if (requestFlush)
+            sender.execute(this::flushReady);
+    }
+
+    public synchronized BigQueryExportStats getStats() {
+        return new BigQueryExportStats(buffered.size(), retrying.size(), deadLetters.size(),
+                                       outbox != null ? outbox.getPendingRows() : 0, outbox != null ? outbox.getSegments() : 0,
+                                       exportedRows, retriedRows, deadLetteredRows, flushes, lastFlushMs, maxFlushMs,
+                                       flushes > 0 ? (double) totalFlushMs / flushes : 0.0);
+    }
+
+    // Sends batches for as long as there are rows ready to be sent. Runs on the sender thread only.
+    private void flushReady() {
+        try {
+            if (outbox != null)
+                shipOutbox();
+
+            List<PendingRow> batch;
+            while (!(batch = takeReady(System.currentTimeMillis())).isEmpty()) {
+                // BigQuery is called without the lock, callers and stats never wait for it
+                List<PendingRow> retry = send(batch, true);
+                long now = System.currentTimeMillis();
+
+                synchronized (this) {
+                    for (PendingRow failed : retry) {
+                        failed.dueAt = now + backoff(failed.attempts);
+                        retrying.add(failed);
+                        retriedRows++;
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // An exception would cancel the scheduled flushes
+            logger.log(Level.SEVERE, "Unexpected failure while exporting to BigQuery.", e);
+        }
+    }
+
+    /* Ships the outbox in order. A batch is read from the checkpoint and sent until every row of it is exported or
+     * given up on, and is committed only then, so a batch cut short by a restart is sent again. Rows stay in the
+     * outbox while BigQuery fails, and are not hurried out on shutdown.
+     * Only rows BigQuery rejects with errors of their own are given up on. A failed request counts no attempt: the
+     * batch is sent again, waiting up to MAX_BACKOFF_MS between sends, for as long as BigQuery is down.
+     */
+    private void shipOutbox() throws IOException {
+        while (System.currentTimeMillis() >= outboxRetryAt) {
+            if (outboxRows == null) {
+                outboxBatch = outbox.read(MAX_ROWS_PER_FLUSH);
+                if (outboxBatch.isEmpty())
+                    return;
+
+                long now = System.currentTimeMillis();
+                outboxRows = new ArrayList<>(outboxBatch.getRows().size());
+                outboxBatch.getRows().forEach(row -> outboxRows.add(new PendingRow(row, now)));
+            }
+
+            List<PendingRow> failed = send(outboxRows, false);
+            if (!failed.isEmpty()) {
+                synchronized (this) {
+                    retriedRows += failed.size();
+                }
+                outboxRows = failed;
+                outboxRetryAt = System.currentTimeMillis() + backoff(++outboxFailures);
+                return;
+            }
+
+            outbox.commit(outboxBatch);
+            outboxRows = null;
+            outboxFailures = 0;
+        }
+    }
+
+    private synchronized List<PendingRow> takeReady(long now) {
+        flushRequested = false;
+        List<PendingRow> batch = new ArrayList<>();
+
+        Iterator<PendingRow> it = retrying.iterator();
+        while (it.hasNext() && batch.size() < MAX_ROWS_PER_FLUSH) {
+            PendingRow pending = it.next();
+            if (pending.dueAt <= now || closing) {
+                batch.add(pending);
+                it.remove();
+            }
+        }
+
+        PendingRow oldest = buffered.peek();
+        boolean bufferReady = oldest != null && (buffered.size() >= MAX_ROWS_PER_FLUSH || now - oldest.bufferedAt >= FLUSH_INTERVAL_MS || closing);
+        while (bufferReady && !buffered.isEmpty() && batch.size() < MAX_ROWS_PER_FLUSH) {
+            batch.add(buffered.poll());
+        }
+
+        return batch;
+    }
+
+    /* Returns the rows to send again. Rows that failed too often are given up on instead. A failed request counts as
+     * an attempt of every row only if requestFailuresCount, rows of the outbox wait for BigQuery to come back.
+     */
+    private List<PendingRow> send(List<PendingRow> batch, boolean requestFailuresCount) {
+        List<InsertAllRequest.RowToInsert> rows = new ArrayList<>(batch.size());
+        batch.forEach(pending -> rows.add(pending.row));
+
+        long start = System.nanoTime();
+        Map<Long, List<BigQueryError>> errors;
+        String requestFailure = null;
+        try {
+            errors = sink.insertAll(rows);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to export " + rows.size() + " rows to BigQuery.", e);
+            errors = null;
+            requestFailure = String.valueOf(e.getMessage());
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        List<PendingRow> retry = new ArrayList<>();
+        List<PendingRow> givenUp = new ArrayList<>();
+        List<String> reasons = new ArrayList<>();
+        synchronized (this) {
+            flushes++;
+            lastFlushMs = elapsedMs;
+            maxFlushMs = Math.max(maxFlushMs, elapsedMs);
+            totalFlushMs += elapsedMs;
+
+            for (int i = 0; i < batch.size(); i++) {
+                List<BigQueryError> rowErrors = errors != null ? errors.get((long) i) : null;
+                if (errors != null && rowErrors == null) {
+                    exportedRows++;
+                    continue;
+                }
+
+                PendingRow failed = batch.get(i);
+                if (errors == null && !requestFailuresCount) {
+                    retry.add(failed);
+                    continue;
+                }
+
+                failed.attempts++;
+                if (failed.attempts >= MAX_ATTEMPTS) {
+                    givenUp.add(failed);
+                    reasons.add(requestFailure != null ? requestFailure : String.valueOf(rowErrors));
+                } else {
+                    retry.add(failed);
+                }
+            }
+        }
+
+        for (int i = 0; i < givenUp.size(); i++) {
+            deadLetter(givenUp.get(i), reasons.get(i));
+        }
+
+        return retry;
+    }
+
+    // The shift is bounded, so any number of attempts waits MAX_BACKOFF_MS at most.
+    private static long backoff(int attempts) {
+        return Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(Math.max(attempts - 1, 0), 20));
+    }
+
+    // Called without the lock, which is only taken for the bookkeeping. The dead-letter file is written after.
+    private void deadLetter(PendingRow pending, String reason) {
+        logger.severe("Gave up exporting row " + pending.row.getId() + " after " + pending.attempts + " attempts, " + reason +
+                      ": " + pending.row.getContent());
+
+        synchronized (this) {
+            if (deadLetters.size() >= DEAD_LETTER_CAPACITY)
+                deadLetters.poll();
+
+            deadLetters.add(pending);
+            deadLetteredRows++;
+        }
+
+        if (outbox != null) {
+            try {
+                outbox.deadLetter(pending.row, reason);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Failed to keep row " + pending.row.getId() + " in the dead-letter file.", e);
+            }
+        }
+    }
+
+    private void close(long timeoutMs) {
+        synchronized (this) {
+            closing = true;
+        }
+
+        try {
+            sender.submit(this::flushReady).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            logger.log(Level.WARNING, "BigQuery export not flushed on shutdown.", e);
+        }
+
+        sender.shutdownNow();
+        if (outbox != null)
+            outbox.close();
+
+        BigQueryExportStats stats = getStats();
+        if (stats.getBufferedRows() + stats.getRetryingRows() > 0)
+            logger.warning("BigQuery export stopped, " + (stats.getBufferedRows() + stats.getRetryingRows()) + " rows were not exported.");
+    }
+}
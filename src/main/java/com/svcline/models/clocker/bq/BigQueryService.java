@@ -3,7 +3,7 @@ package com.svcline.models.clocker.bq;
 import com.google.api.services.bigquery.model.TableCell;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.cloud.bigquery.*;
-import com.google.common.collect.ImmutableList;
+import com.svcline.models.Props;
 import com.svcline.models.clocker.Clocker;
 import com.svcline.models.clocker.Times;
 import com.svcline.models.clocker.Timing;
@@ -17,7 +17,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
-public class BigQueryService {
+// Streams rows to the timekeeper table of the environment.
+public class BigQueryService implements RowSink {
     private static final Logger logger = Logger.getLogger(BigQueryService.class.getName());
     private static final String ITEM_ID = "itemId";
     private static final String ITEM_PRODUCTION_TIME = "itemProductionTime";
@@ -41,18 +42,13 @@ public class BigQueryService {
     private static final String datasetName = "production";
 
     private final String tableName;
-    private final ProductionLine productionLine;
-    private BigQuery bigquery = null;
-
-    public BigQueryService(ProductionLine productionLine) {
-        if (productionLine == null)
-            throw new NullPointerException("Production line cannot be null");
-
-        this.productionLine = productionLine;
+    private final BigQuery bigquery;
 
+    // Builds a client with the service account, which takes a while. Clients are meant to be shared, see BigQueryExporter.
+    public BigQueryService(Props props) throws IOException {
         String projectId;
         String serviceAccount1;
-        if (this.productionLine.getProps().isLiveEnv()) {
+        if (props.isLiveEnv()) {
             this.tableName = TABLE_LIVE;
             projectId = PROJECT_ID_LIVE;
             serviceAccount1 = SERVICE_ACCOUNT;
@@ -62,25 +58,23 @@ public class BigQueryService {
             serviceAccount1 = SERVICE_ACCOUNT;
         }
 
-
         InputStream serviceAccount = getClass().getClassLoader().getResourceAsStream(serviceAccount1);
 
         assert serviceAccount != null;
-        try {
-            bigquery = BigQueryOptions.newBuilder().setProjectId(projectId).setCredentials(GoogleCredentials.fromStream(serviceAccount)).build().getService();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        bigquery = BigQueryOptions.newBuilder().setProjectId(projectId).setCredentials(GoogleCredentials.fromStream(serviceAccount)).build().getService();
     }
 
-    public void insertEntry(Clocker clocker) {
-        if (!this.productionLine.getProps().isTimekeeping()) {
-            logger.info("Timekeeping not enabled. Times will not be measured.");
-            return;
-        } else if (!this.productionLine.getProps().isClocking()) {
-            logger.info("Cannot measure times if clocking is disabled.");
-        }
+    // The table rows go to, depending on the environment
+    public static String tableFor(Props props) {
+        return props.isLiveEnv() ? TABLE_LIVE : TABLE_TEST;
+    }
 
+    public String getTableName() {
+        return tableName;
+    }
+
+    // The row of a finished item, with the times calculated against the configuration of the production line.
+    public static Map<String, Object> rowOf(ProductionLine productionLine, Clocker clocker) {
         BqEntry bqEntry = BqEntry.from(clocker);
         bqEntry.setEstimatedItemProductionTime(productionLine.getProductLineConfiguration().getEstimatedItemProductionTime());
         bqEntry.calculateItemProductionTime();
@@ -105,7 +99,7 @@ public class BigQueryService {
             ix++;
         }
 
-        logger.info("Item production lasted: " + bqEntry.getItemProductionTimeInSeconds());
+        logger.fine("Item production lasted: " + bqEntry.getItemProductionTimeInSeconds());
 
         Map<String, Object> rowContent = new HashMap<>();
         rowContent.put(ITEM_ID, bqEntry.getItemId());
@@ -114,17 +108,14 @@ public class BigQueryService {
         rowContent.put(ESTIMATED_ITEM_PRODUCTION_TIME, bqEntry.getEstimatedItemProductionTime());
         rowContent.put(ITEM_PRODUCTION_TIME_DEVIATION, bqEntry.getItemProductionTimeDeviation());
 
-        InsertAllResponse response =
-                bigquery.insertAll(
-                        InsertAllRequest.newBuilder(TableId.of(datasetName, tableName))
-                                .setRows(ImmutableList.of(InsertAllRequest.RowToInsert.of(rowContent)))
-                                .build());
+        return rowContent;
+    }
+
+    // Rows with an id are deduplicated by BigQuery on a best-effort basis, so a row sent again is not counted twice.
+    @Override
+    public Map<Long, List<BigQueryError>> insertAll(List<InsertAllRequest.RowToInsert> rows) {
+        InsertAllResponse response = bigquery.insertAll(InsertAllRequest.newBuilder(TableId.of(datasetName, tableName)).setRows(rows).build());
 
-        if (response.hasErrors()) {
-            // If any of the insertions failed, this lets you inspect the errors
-            for (Map.Entry<Long, List<BigQueryError>> entry : response.getInsertErrors().entrySet()) {
-                logger.info("Response error: \n" + entry.getValue());
-            }
-        }
+        return response.getInsertErrors();
     }
 }
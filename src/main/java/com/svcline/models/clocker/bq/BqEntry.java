@@ -1,33 +1,33 @@
 package com.svcline.models.clocker.bq;
 
+import com.google.cloud.Timestamp;
 import com.svcline.models.Station;
 import com.svcline.models.clocker.Clocker;
 import com.svcline.models.clocker.Operation;
 import com.svcline.models.clocker.Times;
+import com.svcline.models.clocker.Timing;
+import com.svcline.prodline.StationMap;
 
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.concurrent.TimeUnit;
 
 public class BqEntry extends Clocker {
     private long itemProductionTime;
-    // HashMap that contains the productions times per station.
-    // <K> is the index corresponding to the index from the "timesList" in the parent object.
-    // <V> is the calculated time it took to start the item production (previous stop - current start).
-    private final HashMap<Integer, Double> stationProductionLeadTimes;
-    private final HashMap<Integer, Double> stationProductionTimes;
-    private final HashMap<Integer, Double> estimatedStationProductionTimes;
-    private final HashMap<Integer, Double> stationProductionTimeDeviations;
+    // The times per station, indexed like the "timesList" in the parent object. They are resolved from the timings
+    // and the configuration once, see resolve(), so the calculations run on primitives.
+    // Epoch nanos of the start and stop, truncated to milliseconds as the calculations always were.
+    private long[] stationStarts;
+    private long[] stationStops;
+    private double[] estimatedStationProductionTimes;
+    // The time it took to start the item production (previous stop - current start). There is none for the first station.
+    private double[] stationProductionLeadTimes;
+    private double[] stationProductionTimes;
+    private double[] stationProductionTimeDeviations;
     private Double estimatedItemProductionTime;
     private Double itemProductionTimeDeviation;
 
     public BqEntry() {
         super();
-        this.stationProductionLeadTimes = new HashMap<>();
-        this.stationProductionTimes = new HashMap<>();
-        this.estimatedStationProductionTimes = new HashMap<>();
-        this.stationProductionTimeDeviations = new HashMap<>();
         this.estimatedItemProductionTime = 0.0;
         this.itemProductionTimeDeviation = 0.0;
     }
@@ -48,6 +48,12 @@ public class BqEntry extends Clocker {
         this.itemProductionTimeDeviation = itemProductionTimeDeviation;
     }
 
+    @Override
+    public void setTimesList(ArrayList<Times> timesList) {
+        super.setTimesList(timesList);
+        this.stationStarts = null;
+    }
+
     public static BqEntry from(Clocker clocker) {
         BqEntry bqEntry = new BqEntry();
 
@@ -60,18 +66,15 @@ public class BqEntry extends Clocker {
     }
 
     public void calculateItemProductionTime() {
-        ArrayList<Times> timesList = this.getTimesList();
+        int stations = this.getTimesList().size();
 
-        if (timesList.isEmpty())
+        if (stations == 0)
             return;
 
-        // Start timestamp is at first entry first time.
-        Date start = timesList.get(0).getTimingList().get(Operation.START.getValue()).getTimestamp().toDate();
-        // Stop timestamp is at last entry second time
-        Date stop = timesList.get(timesList.size() - 1).getTimingList().get(Operation.STOP.getValue()).getTimestamp().toDate();
+        resolveTimings();
 
-        // Working with Google Timestamp is a mess, easier method to get duration is to use Date, with some conversion
-        itemProductionTime = getDurationInNanosFromMilli(start.getTime(), stop.getTime());
+        // Start timestamp is at first entry first time, stop timestamp is at last entry second time.
+        itemProductionTime = stationStops[stations - 1] - stationStarts[0];
 
         if (this.estimatedItemProductionTime > 0) {
             this.itemProductionTimeDeviation = round(getItemProductionTimeInSeconds(itemProductionTime) - estimatedItemProductionTime.longValue());
@@ -79,49 +82,45 @@ public class BqEntry extends Clocker {
     }
 
     public void calculateStationTimes() {
-        ArrayList<Times> timesList = this.getTimesList();
+        int stations = this.getTimesList().size();
 
-        if (timesList.isEmpty())
+        if (stations == 0)
             return;
 
-        // We cannot calculate the lead time for first item
-        for (int i = 0; i < timesList.size(); i++) {
-            Times times = timesList.get(i);
-
-            long currentStationStartTime = times.getTimingList().get(Operation.START.getValue()).getTimestamp().toDate().getTime();
-            long currentStationStopTime = times.getTimingList().get(Operation.STOP.getValue()).getTimestamp().toDate().getTime();
+        resolveTimings();
+        resolveEstimates();
 
-            if (i > 0) {
-                long previousStationStopTime = timesList.get(i - 1).getTimingList().get(Operation.STOP.getValue()).getTimestamp().toDate().getTime();
+        stationProductionLeadTimes = new double[stations];
+        stationProductionTimes = new double[stations];
+        stationProductionTimeDeviations = new double[stations];
 
-                long stationLeadTime = getDurationInNanosFromMilli(previousStationStopTime, currentStationStartTime);
-                this.stationProductionLeadTimes.put(i, getItemProductionTimeInSeconds(stationLeadTime));
-            }
-
-            long stationProductionTime = getDurationInNanosFromMilli(currentStationStartTime, currentStationStopTime);
-            this.stationProductionTimes.put(i, getItemProductionTimeInSeconds(stationProductionTime));
+        // We cannot calculate the lead time for first item
+        for (int i = 0; i < stations; i++) {
+            if (i > 0)
+                stationProductionLeadTimes[i] = getItemProductionTimeInSeconds(stationStarts[i] - stationStops[i - 1]);
 
-            Station station = this.plConfiguration.getConfiguredStationMap().getStationById(times.getStationId());
-            this.estimatedStationProductionTimes.put(i, station.getEstimatedStationProductionTime());
-            this.stationProductionTimeDeviations.put(i, round(getItemProductionTimeInSeconds(stationProductionTime) -
-                                                        station.getEstimatedStationProductionTime()));
+            double stationProductionTime = getItemProductionTimeInSeconds(stationStops[i] - stationStarts[i]);
+            stationProductionTimes[i] = stationProductionTime;
+            stationProductionTimeDeviations[i] = round(stationProductionTime - estimatedStationProductionTimes[i]);
         }
     }
 
+    // Null until the station times are calculated, or if there is no station at the position.
     public Double getStationProductionTimeFor(int pos) {
-        return this.stationProductionTimes.get(pos);
+        return valueAt(this.stationProductionTimes, pos);
     }
 
+    // Null for the first station as well.
     public Double getStationProductionLeadTimeFor(int pos) {
-        return this.stationProductionLeadTimes.get(pos);
+        return pos > 0 ? valueAt(this.stationProductionLeadTimes, pos) : null;
     }
 
     public Double getEstimatedStationProductionTimeFor(int pos) {
-        return this.estimatedStationProductionTimes.get(pos);
+        return this.stationProductionTimes != null ? valueAt(this.estimatedStationProductionTimes, pos) : null;
     }
 
     public Double getStationProductionTimeDeviationFor(int pos) {
-        return this.stationProductionTimeDeviations.get(pos);
+        return valueAt(this.stationProductionTimeDeviations, pos);
     }
 
     public long getItemProductionTime() {
@@ -132,15 +131,47 @@ public class BqEntry extends Clocker {
         return getItemProductionTimeInSeconds(this.itemProductionTime);
     }
 
-    private long getDurationInNanosFromMilli(long start, long stop) {
-        return TimeUnit.NANOSECONDS.convert(stop - start, TimeUnit.MILLISECONDS);
+    private void resolveTimings() {
+        ArrayList<Times> timesList = this.getTimesList();
+        if (stationStarts != null && stationStarts.length == timesList.size())
+            return;
+
+        stationStarts = new long[timesList.size()];
+        stationStops = new long[timesList.size()];
+
+        for (int i = 0; i < timesList.size(); i++) {
+            ArrayList<Timing> timingList = timesList.get(i).getTimingList();
+            stationStarts[i] = toEpochNanos(timingList.get(Operation.START.getValue()).getTimestamp());
+            stationStops[i] = toEpochNanos(timingList.get(Operation.STOP.getValue()).getTimestamp());
+        }
+    }
+
+    private void resolveEstimates() {
+        ArrayList<Times> timesList = this.getTimesList();
+        StationMap stationMap = this.plConfiguration.getConfiguredStationMap();
+
+        estimatedStationProductionTimes = new double[timesList.size()];
+        for (int i = 0; i < timesList.size(); i++) {
+            Station station = stationMap.getStationById(timesList.get(i).getStationId());
+            estimatedStationProductionTimes[i] = station.getEstimatedStationProductionTime();
+        }
+    }
+
+    // The same instant as Timestamp.toDate().getTime(), in nanos
+    private static long toEpochNanos(Timestamp timestamp) {
+        return TimeUnit.MILLISECONDS.toNanos(TimeUnit.SECONDS.toMillis(timestamp.getSeconds()) +
+                                             TimeUnit.NANOSECONDS.toMillis(timestamp.getNanos()));
+    }
+
+    private static Double valueAt(double[] values, int pos) {
+        return values != null && pos >= 0 && pos < values.length ? values[pos] : null;
     }
 
-    private double getItemProductionTimeInSeconds(long value) {
+    private static double getItemProductionTimeInSeconds(long value) {
         return (double) value / 1_000_000_000;
     }
 
-    private Double round(Double num) {
+    private static double round(double num) {
         return Math.round(num * 100.0) / 100.0;
     }
 }
@@ -0,0 +1,378 @@
+package com.svcline.models.clocker.bq;
+
+import com.google.cloud.bigquery.InsertAllRequest;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/* A local append-only log of export rows, so rows outlive an unavailable BigQuery and a restart of the instance.
+ * 1. Rows are appended to segment files through a memory mapping, each as its length, its CRC32 and its JSON.
+ *    Segments are mapped at their full size and the unwritten rest of them is zeros, which ends the records.
+ * 2. Appends are made durable in groups. A syncer forces the segment to disk every SYNC_INTERVAL_MS, or as soon as
+ *    SYNC_BATCH appends wait for it, and then completes their futures. Only synced records are read.
+ * 3. Reading starts at the checkpoint, the position up to which rows were shipped. The checkpoint file is replaced
+ *    on every commit and segments before it are deleted. Rows shipped but not committed before the instance stopped
+ *    are read again after the restart, so rows are delivered at least once.
+ * 4. On open, the end of the last segment is found by reading its records up to the first one that is cut off.
+ * Appends may come from any thread, reads and commits from one thread at a time.
+ */
+public class ExportOutbox {
+    private static final Logger logger = Logger.getLogger(ExportOutbox.class.getName());
+    private static final Gson gson = new Gson();
+
+    private static final int SEGMENT_SIZE = 8 << 20;
+    private static final int RECORD_HEADER = 8;     // Length and CRC32 of the JSON
+    private static final long SYNC_INTERVAL_MS = 50;
+    private static final int SYNC_BATCH = 256;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final String DEAD_LETTERS = "dead-letters.ndjson";
+
+    private final Path dir;
+    private final ScheduledExecutorService syncer;
+    private final Object deadLetterLock = new Object();     // Dead letters are written apart from the log
+
+    // Guarded by this
+    private long segment;
+    private MappedByteBuffer buffer;
+    private long syncedSegment;
+    private int syncedOffset;
+    private long pendingRows = 0;
+    private ArrayList<CompletableFuture<Void>> unsynced = new ArrayList<>();
+    private boolean closed = false;
+
+    // The checkpoint, changed by the reader only
+    private long readSegment;
+    private int readOffset;
+
+    private static final class OutboxRow {
+        private String id;
+        private Map<String, Object> content;
+        private String reason;
+
+        private OutboxRow(String id, Map<String, Object> content, String reason) {
+            this.id = id;
+            this.content = content;
+            this.reason = reason;
+        }
+    }
+
+    // Rows read from the outbox, and the position after the last of them to commit once they are shipped.
+    public static final class Batch {
+        private final List<InsertAllRequest.RowToInsert> rows;
+        private final long endSegment;
+        private final int endOffset;
+
+        private Batch(List<InsertAllRequest.RowToInsert> rows, long endSegment, int endOffset) {
+            this.rows = rows;
+            this.endSegment = endSegment;
+            this.endOffset = endOffset;
+        }
+
+        public List<InsertAllRequest.RowToInsert> getRows() {
+            return rows;
+        }
+
+        public boolean isEmpty() {
+            return rows.isEmpty();
+        }
+    }
+
+    public ExportOutbox(Path dir) throws IOException {
+        this.dir = Files.createDirectories(dir);
+
+        TreeSet<Long> segments = listSegments();
+        Path checkpoint = dir.resolve(CHECKPOINT);
+        if (Files.exists(checkpoint)) {
+            String[] position = Files.readString(checkpoint).trim().split(" ");
+            readSegment = Long.parseLong(position[0]);
+            readOffset = Integer.parseInt(position[1]);
+        } else {
+            readSegment = segments.isEmpty() ? 0 : segments.first();
+            readOffset = 0;
+        }
+
+        segment = segments.isEmpty() ? readSegment : Math.max(segments.last(), readSegment);
+        buffer = map(segment);
+        buffer.position(endOf(segment));
+        syncedSegment = segment;
+        syncedOffset = buffer.position();
+        scan(readSegment, readOffset, Integer.MAX_VALUE, segment, syncedOffset, json -> pendingRows++);
+
+        syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "export-outbox-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncer.scheduleWithFixedDelay(this::sync, SYNC_INTERVAL_MS, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        logger.info("Export outbox at " + dir + " opened with " + pendingRows + " rows to ship.");
+    }
+
+    // Completes once the row is on disk.
+    public CompletableFuture<Void> append(String rowId, Map<String, Object> content) {
+        byte[] json = gson.toJson(new OutboxRow(rowId, content, null)).getBytes(StandardCharsets.UTF_8);
+        if (RECORD_HEADER + json.length > SEGMENT_SIZE)
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Row " + rowId + " is too large for the outbox."));
+
+        CRC32 crc = new CRC32();
+        crc.update(json);
+
+        CompletableFuture<Void> synced = new CompletableFuture<>();
+        boolean syncNow;
+        synchronized (this) {
+            if (closed)
+                return CompletableFuture.failedFuture(new IllegalStateException("Export outbox is closed."));
+
+            if (buffer.remaining() < RECORD_HEADER + json.length) {
+                try {
+                    roll();
+                } catch (IOException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            }
+
+            buffer.putInt(json.length).putInt((int) crc.getValue()).put(json);
+            pendingRows++;
+            unsynced.add(synced);
+            syncNow = unsynced.size() == SYNC_BATCH;
+        }
+
+        if (syncNow) {
+            try {
+                syncer.execute(this::sync);
+            } catch (RejectedExecutionException e) {
+                // Closed in the meantime, which syncs the rest
+            }
+        }
+
+        return synced;
+    }
+
+    // Reads up to maxRows synced rows after the checkpoint. Until the batch is committed, reading again returns it again.
+    public Batch read(int maxRows) throws IOException {
+        long lastSegment;
+        int lastOffset;
+        synchronized (this) {
+            lastSegment = syncedSegment;
+            lastOffset = syncedOffset;
+        }
+
+        List<InsertAllRequest.RowToInsert> rows = new ArrayList<>();
+        long[] end = scan(readSegment, readOffset, maxRows, lastSegment, lastOffset, json -> {
+            OutboxRow row = gson.fromJson(json, OutboxRow.class);
+            rows.add(InsertAllRequest.RowToInsert.of(row.id, row.content));
+        });
+
+        return new Batch(rows, end[0], (int) end[1]);
+    }
+
+    // Moves the checkpoint past the batch, which was shipped.
+    public void commit(Batch batch) throws IOException {
+        Path checkpoint = dir.resolve(CHECKPOINT);
+        Path next = dir.resolve(CHECKPOINT + ".next");
+
+        try (FileChannel channel = FileChannel.open(next, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap((batch.endSegment + " " + batch.endOffset).getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+        Files.move(next, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        synchronized (this) {
+            readSegment = batch.endSegment;
+            readOffset = batch.endOffset;
+            pendingRows -= batch.rows.size();
+        }
+
+        for (long shipped : listSegments().headSet(readSegment)) {
+            Files.deleteIfExists(segmentFile(shipped));
+        }
+    }
+
+    // Keeps a row that was given up on in the dead-letter file of the outbox, one JSON per line.
+    public void deadLetter(InsertAllRequest.RowToInsert row, String reason) throws IOException {
+        String line = gson.toJson(new OutboxRow(row.getId(), row.getContent(), reason)) + "\n";
+
+        synchronized (deadLetterLock) {
+            try (FileChannel channel = FileChannel.open(dir.resolve(DEAD_LETTERS), CREATE, WRITE, APPEND)) {
+                channel.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+                channel.force(false);
+            }
+        }
+    }
+
+    // Rows appended and not yet committed
+    public synchronized long getPendingRows() {
+        return pendingRows;
+    }
+
+    public synchronized long getSegments() {
+        return segment - readSegment + 1;
+    }
+
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+
+        syncer.shutdown();
+        try {
+            syncer.awaitTermination(SYNC_INTERVAL_MS * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sync();
+    }
+
+    private void sync() {
+        ArrayList<CompletableFuture<Void>> waiting;
+        MappedByteBuffer toForce;
+        long forcedSegment;
+        int forcedOffset;
+
+        synchronized (this) {
+            if (unsynced.isEmpty())
+                return;
+
+            waiting = unsynced;
+            unsynced = new ArrayList<>();
+            toForce = buffer;
+            forcedSegment = segment;
+            forcedOffset = buffer.position();
+        }
+
+        try {
+            toForce.force();
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Failed to sync the export outbox.", e);
+            waiting.forEach(synced -> synced.completeExceptionally(e));
+            return;
+        }
+
+        synchronized (this) {
+            if (forcedSegment > syncedSegment || (forcedSegment == syncedSegment && forcedOffset > syncedOffset)) {
+                syncedSegment = forcedSegment;
+                syncedOffset = forcedOffset;
+            }
+        }
+
+        waiting.forEach(synced -> synced.complete(null));
+    }
+
+    // The records left in the segment are synced along, then appends go on in a new one.
+    private void roll() throws IOException {
+        buffer.force();
+        buffer = map(segment + 1);
+        segment++;
+    }
+
+    /* Passes the JSON of up to maxRows records to the consumer, from the given position up to the last one, going on
+     * into the following segments. Returns the segment and offset after the last record read.
+     */
+    private long[] scan(long fromSegment, int fromOffset, int maxRows, long lastSegment, int lastOffset,
+                        Consumer<String> consumer) throws IOException {
+        long current = fromSegment;
+        int offset = fromOffset;
+        int read = 0;
+
+        while (read < maxRows && (current < lastSegment || (current == lastSegment && offset < lastOffset))) {
+            Path file = segmentFile(current);
+            if (!Files.exists(file)) {
+                current++;
+                offset = 0;
+                continue;
+            }
+
+            try (FileChannel channel = FileChannel.open(file, READ)) {
+                int limit = current < lastSegment ? SEGMENT_SIZE : lastOffset;
+                byte[] json;
+
+                while (read < maxRows && offset < limit && (json = readRecord(channel, offset, limit)) != null) {
+                    consumer.accept(new String(json, StandardCharsets.UTF_8));
+                    offset += RECORD_HEADER + json.length;
+                    read++;
+                }
+
+                if (read < maxRows && current < lastSegment) {
+                    // The rest of the segment is empty
+                    current++;
+                    offset = 0;
+                } else {
+                    break;
+                }
+            }
+        }
+
+        return new long[]{current, offset};
+    }
+
+    // Returns null at the end of the records, or at a record that was cut off.
+    private static byte[] readRecord(FileChannel channel, int offset, int limit) throws IOException {
+        if (offset + RECORD_HEADER > limit)
+            return null;
+
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        channel.read(header, offset);
+        header.flip();
+        int length = header.getInt();
+        int crc = header.getInt();
+        if (length <= 0 || offset + RECORD_HEADER + length > limit)
+            return null;
+
+        ByteBuffer body = ByteBuffer.allocate(length);
+        channel.read(body, offset + RECORD_HEADER);
+        CRC32 actual = new CRC32();
+        actual.update(body.array());
+
+        return (int) actual.getValue() == crc ? body.array() : null;
+    }
+
+    private int endOf(long segmentIndex) throws IOException {
+        long[] end = scan(segmentIndex, 0, Integer.MAX_VALUE, segmentIndex, SEGMENT_SIZE, json -> { });
+        return end[0] == segmentIndex ? (int) end[1] : 0;
+    }
+
+    private MappedByteBuffer map(long segmentIndex) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentFile(segmentIndex), CREATE, READ, WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+        }
+    }
+
+    private Path segmentFile(long segmentIndex) {
+        return dir.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, segmentIndex, SEGMENT_SUFFIX));
+    }
+
+    private TreeSet<Long> listSegments() throws IOException {
+        TreeSet<Long> segments = new TreeSet<>();
+
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(file -> file.getFileName().toString())
+                 .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                 .forEach(name -> segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))));
+        }
+
+        return segments;
+    }
+}
@@ -0,0 +1,198 @@
+package com.svcline.models.clocker.bq;
+
+import com.google.gson.Gson;
+import com.svcline.models.Props;
+import com.svcline.models.RecomputeProgress;
+import com.svcline.models.clocker.Clocker;
+import com.svcline.models.clocker.ClockerPage;
+import com.svcline.models.clocker.Operation;
+import com.svcline.models.clocker.Times;
+import com.svcline.prodline.ProductLineConfiguration;
+import com.svcline.prodline.ProductionLine;
+import com.svcline.store.ClockerStore;
+import com.svcline.store.Stores;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/* Computes the export rows of all stored clockers again, for when BqEntry or the estimates changed.
+ * 1. Clockers are read a page at a time. The next page is read while the rows of the current one are computed on
+ *    the fork-join pool.
+ * 2. The rows of a page go to a newline-delimited JSON file of their own, rows-000001.ndjson and on. A file is written
+ *    under a temporary name and then moved in place, so the files that exist are complete. They can be loaded with
+ *    a BigQuery load job (NEWLINE_DELIMITED_JSON) instead of being streamed row by row, or kept as they are.
+ * 3. After every file the checkpoint records the next page token and the counts. A job started again on the same
+ *    directory goes on after the last file, and a finished job does nothing.
+ * Clockers of items still on the line, that did not stop at the end station, are skipped.
+ */
+public class RecomputeJob {
+    private static final Logger logger = Logger.getLogger(RecomputeJob.class.getName());
+    private static final Gson gson = new Gson();
+    private static final String CHECKPOINT = "checkpoint.json";
+    private static final String ROWS_FILE = "rows-%06d.ndjson";
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    private final ProductionLine productionLine;
+    private final ClockerStore clockerStore;
+    private final Path dir;
+    private final int pageSize;
+    private final ForkJoinPool pool;
+
+    private volatile RecomputeProgress progress;
+
+    public RecomputeJob(ProductionLine productionLine, ClockerStore clockerStore, Path dir, int pageSize, ForkJoinPool pool) {
+        this.productionLine = productionLine;
+        this.clockerStore = clockerStore;
+        this.dir = dir;
+        this.pageSize = pageSize;
+        this.pool = pool;
+    }
+
+    // Blocks until all pages are written. Completes with the progress of the job, also after an earlier run.
+    public RecomputeProgress run() throws IOException, ExecutionException, InterruptedException {
+        Files.createDirectories(dir);
+        progress = readCheckpoint();
+        if (progress.isDone()) {
+            logger.info("Recompute: already done in " + dir + ", " + progress);
+            return progress;
+        }
+
+        if (progress.getPages() > 0)
+            logger.info("Recompute: resuming in " + dir + " after page " + progress.getPages() + ".");
+
+        long started = System.nanoTime();
+        long clockersBefore = progress.getClockers();
+        CompletableFuture<ClockerPage> next = clockerStore.getPage(pageSize, progress.getPageToken());
+
+        while (!progress.isDone()) {
+            ClockerPage page = next.get();
+            if (page.getNextPageToken() != null)
+                next = clockerStore.getPage(pageSize, page.getNextPageToken());
+
+            LongAdder skipped = new LongAdder();
+            LongAdder failed = new LongAdder();
+            List<String> lines = pool.submit(() -> page.getClockers().parallelStream()
+                                                       .map(clocker -> lineOf(clocker, skipped, failed))
+                                                       .filter(line -> line != null)
+                                                       .collect(Collectors.toList())).get();
+
+            writeRows(progress.getPages() + 1, lines);
+
+            RecomputeProgress written = new RecomputeProgress(progress);
+            written.pageWritten(page.getClockers().size(), lines.size(), skipped.sum(), failed.sum(), page.getNextPageToken());
+            writeCheckpoint(written);
+            progress = written;
+
+            long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started));
+            logger.info("Recompute: page " + progress.getPages() + ", " + progress.getClockers() + " clockers, " + progress.getRows() +
+                        " rows, " + progress.getSkipped() + " skipped, " + progress.getFailed() + " failed, " +
+                        (progress.getClockers() - clockersBefore) / seconds + " clockers/s.");
+        }
+
+        logger.info("Recompute: done in " + dir + ", " + progress);
+        return progress;
+    }
+
+    // The progress as of the last page written, may be read while the job runs.
+    public RecomputeProgress getProgress() {
+        return progress;
+    }
+
+    // Null for clockers without a row, which are counted.
+    private String lineOf(Clocker clocker, LongAdder skipped, LongAdder failed) {
+        if (!isFinished(clocker)) {
+            skipped.increment();
+            return null;
+        }
+
+        try {
+            Map<String, Object> row = BigQueryService.rowOf(productionLine, clocker);
+            return gson.toJson(row);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Recompute: could not compute the row of item " + clocker.getItemId() + ".", e);
+            failed.increment();
+            return null;
+        }
+    }
+
+    // Finished items stopped at the end station last, and at every station before.
+    private boolean isFinished(Clocker clocker) {
+        List<Times> timesList = clocker.getTimesList();
+        if (timesList == null || timesList.isEmpty() ||
+            !timesList.get(timesList.size() - 1).getStationId().equals(productionLine.getEndStationId()))
+            return false;
+
+        for (Times times : timesList) {
+            if (times.getTimingList() == null || times.getTimingList().size() <= Operation.STOP.getValue())
+                return false;
+        }
+
+        return true;
+    }
+
+    private void writeRows(long pageNumber, List<String> lines) throws IOException {
+        Path file = dir.resolve(String.format(ROWS_FILE, pageNumber));
+        Path temporary = dir.resolve(file.getFileName() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private RecomputeProgress readCheckpoint() throws IOException {
+        Path checkpoint = dir.resolve(CHECKPOINT);
+        if (!Files.exists(checkpoint))
+            return new RecomputeProgress();
+
+        return gson.fromJson(Files.readString(checkpoint), RecomputeProgress.class);
+    }
+
+    // The checkpoint is replaced at once, a job stopped while writing it finds the previous one
+    private void writeCheckpoint(RecomputeProgress written) throws IOException {
+        Path next = dir.resolve(CHECKPOINT + ".next");
+        Files.writeString(next, gson.toJson(written), StandardCharsets.UTF_8);
+        Files.move(next, dir.resolve(CHECKPOINT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Arguments: the output directory, and optionally the environment and the page size.
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: RecomputeJob <output directory> [environment] [page size]");
+            System.exit(2);
+        }
+
+        Props props = new Props();
+        if (args.length > 1)
+            props.setEnvironment(args[1]);
+        int pageSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PAGE_SIZE;
+
+        Stores stores = Stores.from(props);
+        ProductLineConfiguration plc = new ProductLineConfiguration(stores.getConfigurationStore());
+        plc.loadFromDb(props.getCurrentlyLoadedConfiguration());
+
+        ProductionLine productionLine = new ProductionLine(stores);
+        productionLine.init(plc, props);
+
+        new RecomputeJob(productionLine, stores.getClockerStore(), Paths.get(args[0]), pageSize, ForkJoinPool.commonPool()).run();
+    }
+}
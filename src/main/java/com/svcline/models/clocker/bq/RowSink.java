@@ -0,0 +1,14 @@
+package com.svcline.models.clocker.bq;
+
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.InsertAllRequest;
+
+import java.util.List;
+import java.util.Map;
+
+// Where exported rows are streamed to, see BigQueryService.
+public interface RowSink {
+    // Sends the rows in one request. Returns the errors of the rows that failed by their index, empty if none did.
+    // Throws BigQueryException if the whole request failed.
+    Map<Long, List<BigQueryError>> insertAll(List<InsertAllRequest.RowToInsert> rows);
+}
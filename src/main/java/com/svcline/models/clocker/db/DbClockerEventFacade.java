@@ -0,0 +1,251 @@
+package com.svcline.models.clocker.db;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.svcline.models.clocker.Clocker;
+import com.svcline.models.clocker.ClockerPage;
+import com.svcline.models.clocker.StationTiming;
+import com.svcline.models.clocker.Times;
+import com.svcline.models.clocker.Timing;
+import com.svcline.store.ClockerStore;
+import com.svcline.store.Stores;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static com.svcline.store.StoreFutures.toCompletable;
+
+/* Clockers stored as events. Every timing is a small document of its own, so a write costs the same however long the
+ * route of the item is, and the clocker is built from the timings when it is read.
+ * 1. The item document holds the id and the configuration used for the measurement. It is written with the first
+ *    timings of the item, and once more after the facade forgot about it (see headersWritten); a merge costs no more.
+ * 2. The timings are kept in the "timings" subcollection of the item. A timing's id is its timestamp followed by the
+ *    operation and encoded station, see keyOf, so the ids sort in clocking order and writing the same timing twice
+ *    stores it once.
+ * 3. The timings are added to the clocker in order when it is built. Those the clocker refuses, like a second start
+ *    at a station, are left out, as the document store would have left them out when they were written.
+ */
+public class DbClockerEventFacade implements ClockerStore {
+    private static final Logger logger = Logger.getLogger(DbClockerEventFacade.class.getName());
+    private static final String COLLECTION_LIVE = "clockerLog";
+    private static final String COLLECTION_TEST = "clockerLogTest";
+    private static final String TIMINGS = "timings";
+    private static final int MAX_BATCH_SIZE = 500;      // Firestore limit for writes in one batch
+    private static final int MAX_HEADERS_KNOWN = 10_000;
+
+    private final String activeCollection;
+    private final Firestore db;
+
+    // Items whose document this facade wrote recently, their timings are appended without it
+    private final Cache<String, Boolean> headersWritten = CacheBuilder.newBuilder()
+            .maximumSize(MAX_HEADERS_KNOWN)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    public DbClockerEventFacade(Firestore firestore, Boolean liveEnvironment) {
+        this(firestore, liveEnvironment, null);
+    }
+
+    // The collection of a line other than the default one, see Stores.forLine.
+    public DbClockerEventFacade(Firestore firestore, Boolean liveEnvironment, String lineId) {
+        db = firestore;
+        activeCollection = Stores.collectionOf(liveEnvironment ? COLLECTION_LIVE : COLLECTION_TEST, lineId);
+    }
+
+    @Override
+    public CompletableFuture<Void> append(Clocker newClocker, List<StationTiming> timings) {
+        String itemId = newClocker.getItemId();
+        boolean withHeader = headersWritten.getIfPresent(itemId) == null;
+
+        if (timings.size() + 1 > MAX_BATCH_SIZE)
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Cannot append more than " + (MAX_BATCH_SIZE - 1) + " timings at once."));
+
+        WriteBatch batch = db.batch();
+        if (withHeader)
+            batch.set(item(itemId), headerOf(newClocker), SetOptions.merge());
+
+        for (StationTiming timing : timings) {
+            batch.set(item(itemId).collection(TIMINGS).document(keyOf(timing)), timing);
+        }
+
+        // If the future fails the batch failed and nothing was written.
+        return toCompletable(batch.commit()).thenApply(results -> {
+            if (withHeader)
+                headersWritten.put(itemId, Boolean.TRUE);
+
+            return null;
+        });
+    }
+
+    // Replaces the timings of the item with those of the clocker.
+    @Override
+    public CompletableFuture<Void> set(Clocker clocker) {
+        String itemId = clocker.getItemId();
+        HashMap<String, StationTiming> timings = new HashMap<>();
+
+        for (Times times : clocker.getTimesList()) {
+            for (Timing timing : times.getTimingList()) {
+                StationTiming stationTiming = new StationTiming(times.getStationId(), timing.getOperation(), timing.getTimestamp());
+                timings.put(keyOf(stationTiming), stationTiming);
+            }
+        }
+
+        return toCompletable(item(itemId).collection(TIMINGS).get()).thenCompose(stored -> {
+            List<DocumentReference> removed = new ArrayList<>();
+            for (QueryDocumentSnapshot document : stored.getDocuments()) {
+                if (!timings.containsKey(document.getId()))
+                    removed.add(document.getReference());
+            }
+
+            if (1 + removed.size() + timings.size() > MAX_BATCH_SIZE)
+                throw new IllegalArgumentException("Cannot write more than " + MAX_BATCH_SIZE + " timings in one batch.");
+
+            WriteBatch batch = db.batch();
+            batch.set(item(itemId), headerOf(clocker));
+            removed.forEach(batch::delete);
+            timings.forEach((key, timing) -> batch.set(item(itemId).collection(TIMINGS).document(key), timing));
+
+            return toCompletable(batch.commit()).thenApply(results -> {
+                headersWritten.put(itemId, Boolean.TRUE);
+                return null;
+            });
+        });
+    }
+
+    @Override
+    public CompletableFuture<ArrayList<Times>> getTimesFor(String itemId) {
+        return getFor(itemId).thenApply(clocker -> clocker != null ? clocker.getTimesList() : null);
+    }
+
+    @Override
+    public CompletableFuture<Clocker> getFor(String itemId) {
+        CompletableFuture<DocumentSnapshot> header = toCompletable(item(itemId).get());
+        CompletableFuture<QuerySnapshot> timings = toCompletable(timingsOf(itemId).get());
+
+        return header.thenCombine(timings, (document, timingDocuments) -> document.exists() ? build(document, timingDocuments) : null);
+    }
+
+    // Reads the timings of all items concurrently.
+    @Override
+    public CompletableFuture<ArrayList<Clocker>> getAll() {
+        ApiFuture<QuerySnapshot> query = db.collection(activeCollection).get();
+
+        return toCompletable(query).thenCompose(querySnapshot -> {
+            List<QueryDocumentSnapshot> documents = querySnapshot.getDocuments();
+            if (documents.isEmpty())
+                return CompletableFuture.completedFuture(null);
+
+            List<CompletableFuture<Clocker>> clockers = new ArrayList<>(documents.size());
+            for (QueryDocumentSnapshot document : documents) {
+                clockers.add(toCompletable(timingsOf(document.getId()).get()).thenApply(timings -> build(document, timings)));
+            }
+
+            return CompletableFuture.allOf(clockers.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+                ArrayList<Clocker> clockedItems = new ArrayList<>(clockers.size());
+                clockers.forEach(clocker -> clockedItems.add(clocker.join()));
+
+                return clockedItems;
+            });
+        });
+    }
+
+    // Pages are ordered by document id, so the item id works as a startAfter cursor. The timings of the page are read concurrently.
+    @Override
+    public CompletableFuture<ClockerPage> getPage(int pageSize, String pageToken) {
+        Query query = db.collection(activeCollection).orderBy(FieldPath.documentId()).limit(pageSize);
+        if (pageToken != null && !pageToken.isBlank())
+            query = query.startAfter(pageToken);
+
+        return toCompletable(query.get()).thenCompose(querySnapshot -> {
+            List<QueryDocumentSnapshot> documents = querySnapshot.getDocuments();
+            List<CompletableFuture<Clocker>> clockers = new ArrayList<>(documents.size());
+            for (QueryDocumentSnapshot document : documents) {
+                clockers.add(toCompletable(timingsOf(document.getId()).get()).thenApply(timings -> build(document, timings)));
+            }
+
+            String nextPageToken = documents.size() == pageSize ? documents.get(documents.size() - 1).getId() : null;
+            return CompletableFuture.allOf(clockers.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+                ArrayList<Clocker> page = new ArrayList<>(clockers.size());
+                clockers.forEach(clocker -> page.add(clocker.join()));
+
+                return new ClockerPage(page, nextPageToken);
+            });
+        });
+    }
+
+    // Firestore does not delete subcollections with their document, the timings are deleted along in batches.
+    @Override
+    public CompletableFuture<Void> deleteFor(String itemId) {
+        headersWritten.invalidate(itemId);
+
+        return toCompletable(item(itemId).collection(TIMINGS).get()).thenCompose(stored -> {
+            List<QueryDocumentSnapshot> documents = stored.getDocuments();
+            List<CompletableFuture<?>> deleted = new ArrayList<>();
+
+            for (int from = 0; from < documents.size(); from += MAX_BATCH_SIZE) {
+                WriteBatch batch = db.batch();
+                documents.subList(from, Math.min(from + MAX_BATCH_SIZE, documents.size()))
+                         .forEach(document -> batch.delete(document.getReference()));
+                deleted.add(toCompletable(batch.commit()));
+            }
+
+            // The item document goes last, so a failed delete leaves no timings without it
+            return CompletableFuture.allOf(deleted.toArray(new CompletableFuture<?>[0]))
+                                    .thenCompose(done -> toCompletable(item(itemId).delete()))
+                                    .thenApply(result -> null);
+        });
+    }
+
+    private DocumentReference item(String itemId) {
+        return db.collection(activeCollection).document(itemId);
+    }
+
+    private Query timingsOf(String itemId) {
+        return item(itemId).collection(TIMINGS).orderBy(FieldPath.documentId());
+    }
+
+    private static Map<String, Object> headerOf(Clocker clocker) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("itemId", clocker.getItemId());
+        fields.put("plConfiguration", clocker.getPlConfiguration());
+
+        return fields;
+    }
+
+    /* Seconds and nanos are padded, so the ids sort by time. The station id is URL encoded, as a "/" in it would make
+     * the id a path. Ids of stations with letters, digits, "-", "_" and "." only stay as they are.
+     */
+    private static String keyOf(StationTiming timing) {
+        Timestamp timestamp = timing.getTimestamp();
+
+        return String.format("%012d%09d-%s-%s", timestamp.getSeconds(), timestamp.getNanos(), timing.getOperation(),
+                             URLEncoder.encode(timing.getStationId(), StandardCharsets.UTF_8));
+    }
+
+    // The item document maps to a clocker without times
+    private Clocker build(DocumentSnapshot header, QuerySnapshot timingDocuments) {
+        Clocker clocker = header.toObject(Clocker.class);
+
+        List<StationTiming> timings = new ArrayList<>(timingDocuments.size());
+        for (QueryDocumentSnapshot document : timingDocuments.getDocuments()) {
+            timings.add(document.toObject(StationTiming.class));
+        }
+
+        for (StationTiming skipped : clocker.addTimes(timings)) {
+            logger.warning("Left out " + skipped.getOperation() + " at " + skipped.getStationId() + " for item " + clocker.getItemId() + ".");
+        }
+
+        return clocker;
+    }
+}
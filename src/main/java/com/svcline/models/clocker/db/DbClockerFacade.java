@@ -3,86 +3,111 @@ package com.svcline.models.clocker.db;
 import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
 import com.svcline.models.clocker.Clocker;
+import com.svcline.models.clocker.ClockerPage;
 import com.svcline.models.clocker.Times;
-import com.svcline.models.clocker.bq.BigQueryService;
+import com.svcline.store.ClockerStore;
+import com.svcline.store.Stores;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 
-public class DbClockerFacade {
+import static com.svcline.store.StoreFutures.toCompletable;
+
+public class DbClockerFacade implements ClockerStore {
     private static final Logger logger = Logger.getLogger(DbClockerFacade.class.getName());
     private static final String COLLECTION_LIVE = "clocker";
     private static final String COLLECTION_TEST = "clockerTest";
 
-    private static String activeCollection;
-    private static Firestore db;
+    private final String activeCollection;
+    private final Firestore db;
 
     public DbClockerFacade(Firestore firestore, Boolean liveEnvironment) {
+        this(firestore, liveEnvironment, null);
+    }
+
+    // The collection of a line other than the default one, see Stores.forLine.
+    public DbClockerFacade(Firestore firestore, Boolean liveEnvironment, String lineId) {
         db = firestore;
-        activeCollection = liveEnvironment ? COLLECTION_LIVE : COLLECTION_TEST;
+        activeCollection = Stores.collectionOf(liveEnvironment ? COLLECTION_LIVE : COLLECTION_TEST, lineId);
     }
 
-    public void set(Clocker clocker) throws ExecutionException, InterruptedException {
+    @Override
+    public CompletableFuture<Void> set(Clocker clocker) {
         ApiFuture<WriteResult> wr = db.collection(activeCollection).document(clocker.getItemId()).set(clocker);
 
-        //noinspection StatementWithEmptyBody
-        while (!wr.isDone()) { /* We lock the thread waiting for the Firestore operation to be done. using callbacks does not help  */ }
-
-        // We get the result. If this throws an exception the "set" failed.
-        //noinspection ResultOfMethodCallIgnored
-        wr.get().getUpdateTime();
+        // If the future fails the "set" failed.
+        return toCompletable(wr).thenApply(result -> null);
     }
 
-    public ArrayList<Times> getTimesFor(String itemId) throws ExecutionException, InterruptedException {
+    @Override
+    public CompletableFuture<ArrayList<Times>> getTimesFor(String itemId) {
         ApiFuture<DocumentSnapshot> query = db.collection(activeCollection).document(itemId).get(FieldMask.of("timesList"));
 
-        DocumentSnapshot document = query.get();
-
-        if (document.exists()) {
-            logger.info("Clocker document: " + document);
+        return toCompletable(query).thenApply(document -> {
+            if (document.exists()) {
+                logger.info("Clocker document: " + document);
 
-            @SuppressWarnings("unchecked")
-            ArrayList<Times> timesList = (ArrayList<Times>) document.get("timesList");
-            return timesList;
-        }
+                @SuppressWarnings("unchecked")
+                ArrayList<Times> timesList = (ArrayList<Times>) document.get("timesList");
+                return timesList;
+            }
 
-        return null;
+            return null;
+        });
     }
 
-    public Clocker getFor(String itemId) throws ExecutionException, InterruptedException {
+    @Override
+    public CompletableFuture<Clocker> getFor(String itemId) {
         ApiFuture<DocumentSnapshot> query = db.collection(activeCollection).document(itemId).get();
-        DocumentSnapshot document = query.get();
 
-        return document.exists() ? document.toObject(Clocker.class) : null;
+        return toCompletable(query).thenApply(document -> document.exists() ? document.toObject(Clocker.class) : null);
     }
 
-    public ArrayList<Clocker> getAll() throws ExecutionException, InterruptedException {
+    @Override
+    public CompletableFuture<ArrayList<Clocker>> getAll() {
         ApiFuture<QuerySnapshot> query = db.collection(activeCollection).get();
 
-        QuerySnapshot querySnapshot = query.get();
-        List<QueryDocumentSnapshot> documents = querySnapshot.getDocuments();
-        ArrayList<Clocker> clockedItems = new ArrayList<>();
+        return toCompletable(query).thenApply(querySnapshot -> {
+            List<QueryDocumentSnapshot> documents = querySnapshot.getDocuments();
+            ArrayList<Clocker> clockedItems = new ArrayList<>();
 
-        if (documents.isEmpty())
-            return null;
+            if (documents.isEmpty())
+                return null;
 
-        for (QueryDocumentSnapshot document : documents) {
-            clockedItems.add(document.toObject(Clocker.class));
-        }
+            for (QueryDocumentSnapshot document : documents) {
+                clockedItems.add(document.toObject(Clocker.class));
+            }
 
-        return clockedItems;
+            return clockedItems;
+        });
     }
 
+    // Pages are ordered by document id, so the item id works as a startAfter cursor.
+    @Override
+    public CompletableFuture<ClockerPage> getPage(int pageSize, String pageToken) {
+        Query query = db.collection(activeCollection).orderBy(FieldPath.documentId()).limit(pageSize);
+        if (pageToken != null && !pageToken.isBlank())
+            query = query.startAfter(pageToken);
 
-    public void deleteFor(String itemId) throws ExecutionException, InterruptedException {
-        ApiFuture<WriteResult> wr = db.collection(activeCollection).document(itemId).delete();
+        return toCompletable(query.get()).thenApply(querySnapshot -> {
+            List<QueryDocumentSnapshot> documents = querySnapshot.getDocuments();
+            ArrayList<Clocker> clockers = new ArrayList<>(documents.size());
+
+            for (QueryDocumentSnapshot document : documents) {
+                clockers.add(document.toObject(Clocker.class));
+            }
 
-        //noinspection StatementWithEmptyBody
-        while (!wr.isDone()) { /* We lock the thread waiting for the Firestore operation to be done. using callbacks does not help  */ }
+            String nextPageToken = documents.size() == pageSize ? documents.get(documents.size() - 1).getId() : null;
+            return new ClockerPage(clockers, nextPageToken);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteFor(String itemId) {
+        ApiFuture<WriteResult> wr = db.collection(activeCollection).document(itemId).delete();
 
-        //noinspection ResultOfMethodCallIgnored
-        wr.get().getUpdateTime();
+        return toCompletable(wr).thenApply(result -> null);
     }
 }
@@ -0,0 +1,116 @@
+package com.svcline.models.clocker.latency;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/* The counts of a LatencyHistogram at one point in time, with its percentiles in milliseconds. Only the buckets that
+ * counted a value are kept, as [index, count] pairs, so snapshots serialize small. Snapshots of other instances merge
+ * into one as long as their layout, given by subBucketBits, is the same.
+ */
+public class HistogramSnapshot {
+    private int subBucketBits;
+    private long count;
+    private long max;
+    private long p50;
+    private long p95;
+    private long p99;
+    private long[][] buckets;
+
+    public HistogramSnapshot() {
+    }
+
+    static HistogramSnapshot of(long[] counts, long max) {
+        List<long[]> buckets = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0)
+                buckets.add(new long[]{i, counts[i]});
+        }
+
+        HistogramSnapshot snapshot = new HistogramSnapshot();
+        snapshot.subBucketBits = LatencyHistogram.SUB_BUCKET_BITS;
+        snapshot.buckets = buckets.toArray(new long[0][]);
+        snapshot.max = max;
+        snapshot.summarize();
+
+        return snapshot;
+    }
+
+    public HistogramSnapshot merge(HistogramSnapshot other) {
+        if (other.subBucketBits != subBucketBits)
+            throw new IllegalArgumentException("Cannot merge histograms of " + subBucketBits + " and " + other.subBucketBits + " sub-bucket bits.");
+
+        long[] counts = new long[LatencyHistogram.LENGTH];
+        for (long[] bucket : buckets) {
+            counts[(int) bucket[0]] += bucket[1];
+        }
+        for (long[] bucket : other.buckets) {
+            counts[(int) bucket[0]] += bucket[1];
+        }
+
+        return of(counts, Math.max(max, other.max));
+    }
+
+    // The largest value that at least the given percent of the values are equal to or below, zero if there are none.
+    public long valueAtPercentile(double percentile) {
+        long atOrBelow = (long) Math.ceil(count * Math.min(percentile, 100.0) / 100.0);
+        long seen = 0;
+
+        for (long[] bucket : buckets) {
+            seen += bucket[1];
+            if (seen >= Math.max(atOrBelow, 1))
+                return Math.min(LatencyHistogram.highestValueAt((int) bucket[0]), max);
+        }
+
+        return 0;
+    }
+
+    private void summarize() {
+        count = 0;
+        for (long[] bucket : buckets) {
+            count += bucket[1];
+        }
+
+        p50 = valueAtPercentile(50.0);
+        p95 = valueAtPercentile(95.0);
+        p99 = valueAtPercentile(99.0);
+    }
+
+    public int getSubBucketBits() {
+        return subBucketBits;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP95() {
+        return p95;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long[][] getBuckets() {
+        return buckets;
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramSnapshot{" +
+               "count=" + count +
+               ", max=" + max +
+               ", p50=" + p50 +
+               ", p95=" + p95 +
+               ", p99=" + p99 +
+               '}';
+    }
+}
@@ -0,0 +1,57 @@
+package com.svcline.models.clocker.latency;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/* A histogram of durations in milliseconds, laid out like HdrHistogram with two significant digits.
+ * 1. Values below SUB_BUCKET_COUNT have a bucket each. Above that, every power of two is split into HALF_COUNT
+ *    buckets of equal width, so a value is known to within 1/128 of itself.
+ * 2. Values are kept up to MAX_VALUE_MS, larger ones count into the last bucket. Negative values count as zero.
+ * 3. Recording is two atomic updates, and snapshots may be taken while values are recorded.
+ */
+public class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 8;
+    static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static final int HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    static final long MAX_VALUE_MS = TimeUnit.DAYS.toMillis(1);
+    static final int LENGTH = indexOf(MAX_VALUE_MS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(LENGTH);
+    private final AtomicLong max = new AtomicLong(0);
+
+    public void record(long valueMs) {
+        long value = Math.max(0, Math.min(valueMs, MAX_VALUE_MS));
+
+        counts.incrementAndGet(indexOf(value));
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public HistogramSnapshot snapshot() {
+        long[] copy = new long[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            copy[i] = counts.get(i);
+        }
+
+        return HistogramSnapshot.of(copy, max.get());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+
+        // Shifted right by this, the value is between HALF_COUNT and SUB_BUCKET_COUNT
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_COUNT + (shift - 1) * HALF_COUNT + (int) ((value >> shift) - HALF_COUNT);
+    }
+
+    // The largest value that counts into the bucket
+    static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+
+        int shift = (index - SUB_BUCKET_COUNT) / HALF_COUNT + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % HALF_COUNT + HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
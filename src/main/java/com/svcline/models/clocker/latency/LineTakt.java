@@ -0,0 +1,96 @@
+package com.svcline.models.clocker.latency;
+
+import java.util.List;
+
+// The measured pace of the line and its stations, in seconds, see TaktEstimator.
+public class LineTakt {
+    private long finished;
+    private Double itemProductionTime;
+    private Double cycleTime;
+    private Double throughputPerHour;
+    private Double estimatedItemProductionTime;
+    private Double itemProductionTimeDeviation;
+    private String bottleneckStationId;
+    private List<String> bottleneckStationIds;
+    private Double bottleneckProductionTime;
+    private List<StationTakt> stations;
+
+    public LineTakt() {
+    }
+
+    public LineTakt(long finished, Double itemProductionTime, Double cycleTime, Double throughputPerHour,
+                    Double estimatedItemProductionTime, String bottleneckStationId, List<String> bottleneckStationIds,
+                    Double bottleneckProductionTime, List<StationTakt> stations) {
+        this.finished = finished;
+        this.itemProductionTime = itemProductionTime;
+        this.cycleTime = cycleTime;
+        this.throughputPerHour = throughputPerHour;
+        this.estimatedItemProductionTime = estimatedItemProductionTime;
+        this.bottleneckStationId = bottleneckStationId;
+        this.bottleneckStationIds = bottleneckStationIds;
+        this.bottleneckProductionTime = bottleneckProductionTime;
+        this.stations = stations;
+
+        if (itemProductionTime != null && estimatedItemProductionTime != null && estimatedItemProductionTime > 0)
+            this.itemProductionTimeDeviation = itemProductionTime - estimatedItemProductionTime;
+    }
+
+    public long getFinished() {
+        return finished;
+    }
+
+    public Double getItemProductionTime() {
+        return itemProductionTime;
+    }
+
+    public Double getCycleTime() {
+        return cycleTime;
+    }
+
+    public Double getThroughputPerHour() {
+        return throughputPerHour;
+    }
+
+    public Double getEstimatedItemProductionTime() {
+        return estimatedItemProductionTime;
+    }
+
+    public Double getItemProductionTimeDeviation() {
+        return itemProductionTimeDeviation;
+    }
+
+    // The station of the order map, which stands for the stations in parallel with it
+    public String getBottleneckStationId() {
+        return bottleneckStationId;
+    }
+
+    // The bottleneck station and those in parallel with it
+    public List<String> getBottleneckStationIds() {
+        return bottleneckStationIds;
+    }
+
+    // The time the bottleneck takes per item, its mean production time divided by its stations
+    public Double getBottleneckProductionTime() {
+        return bottleneckProductionTime;
+    }
+
+    public List<StationTakt> getStations() {
+        return stations;
+    }
+
+    @Override
+    public String toString() {
+        return "LineTakt{" +
+               "finished=" + finished +
+               ", itemProductionTime=" + itemProductionTime +
+               ", cycleTime=" + cycleTime +
+               ", throughputPerHour=" + throughputPerHour +
+               ", estimatedItemProductionTime=" + estimatedItemProductionTime +
+               ", itemProductionTimeDeviation=" + itemProductionTimeDeviation +
+               ", bottleneckStationId='" + bottleneckStationId + '\'' +
+               ", bottleneckStationIds=" + bottleneckStationIds +
+               ", bottleneckProductionTime=" + bottleneckProductionTime +
+               ", stations=" + stations +
+               '}';
+    }
+}
@@ -0,0 +1,74 @@
+package com.svcline.models.clocker.latency;
+
+import com.google.cloud.Timestamp;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.svcline.models.clocker.Operation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/* Histograms of the production and lead times per station, fed with the clock events of this instance.
+ * The production time at a station runs from the START of an item there to its STOP, the lead time from the STOP at
+ * the station before to the START. The last event of recent items is kept to pair them with the next. Items that
+ * moved on another instance, or were forgotten, give no sample, so the histograms sample the line rather than count it.
+ */
+public class StationLatencies {
+    private static final int MAX_ITEMS = 10_000;
+
+    private final ConcurrentHashMap<String, LatencyHistogram> productionTimes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> leadTimes = new ConcurrentHashMap<>();
+    private final Cache<String, LastEvent> lastEvents = CacheBuilder.newBuilder()
+            .maximumSize(MAX_ITEMS)
+            .expireAfterWrite(1, TimeUnit.DAYS)
+            .build();
+
+    private static final class LastEvent {
+        private final String stationId;
+        private final Operation operation;
+        private final long epochMs;
+
+        private LastEvent(String stationId, Operation operation, long epochMs) {
+            this.stationId = stationId;
+            this.operation = operation;
+            this.epochMs = epochMs;
+        }
+    }
+
+    // Returns the production time it sampled, or -1 if the event gave none.
+    public long record(String itemId, String stationId, Operation operation, Timestamp timestamp) {
+        long epochMs = TimeUnit.SECONDS.toMillis(timestamp.getSeconds()) + TimeUnit.NANOSECONDS.toMillis(timestamp.getNanos());
+        LastEvent last = lastEvents.asMap().put(itemId, new LastEvent(stationId, operation, epochMs));
+        if (last == null)
+            return -1;
+
+        if (operation == Operation.STOP && last.operation == Operation.START && last.stationId.equals(stationId)) {
+            productionTimes.computeIfAbsent(stationId, k -> new LatencyHistogram()).record(epochMs - last.epochMs);
+            return epochMs - last.epochMs;
+        } else if (operation == Operation.START && last.operation == Operation.STOP) {
+            leadTimes.computeIfAbsent(stationId, k -> new LatencyHistogram()).record(epochMs - last.epochMs);
+        }
+
+        return -1;
+    }
+
+    // By station id, for the stations that have a sample of either kind.
+    public List<StationLatencySnapshot> snapshot() {
+        TreeSet<String> stationIds = new TreeSet<>(productionTimes.keySet());
+        stationIds.addAll(leadTimes.keySet());
+
+        List<StationLatencySnapshot> snapshots = new ArrayList<>(stationIds.size());
+        for (String stationId : stationIds) {
+            snapshots.add(new StationLatencySnapshot(stationId, snapshotOf(productionTimes.get(stationId)), snapshotOf(leadTimes.get(stationId))));
+        }
+
+        return snapshots;
+    }
+
+    private static HistogramSnapshot snapshotOf(LatencyHistogram histogram) {
+        return (histogram != null ? histogram : new LatencyHistogram()).snapshot();
+    }
+}
@@ -0,0 +1,46 @@
+package com.svcline.models.clocker.latency;
+
+// The production and lead time histograms of a station, see StationLatencies.
+public class StationLatencySnapshot {
+    private String stationId;
+    private HistogramSnapshot productionTime;
+    private HistogramSnapshot leadTime;
+
+    public StationLatencySnapshot() {
+    }
+
+    public StationLatencySnapshot(String stationId, HistogramSnapshot productionTime, HistogramSnapshot leadTime) {
+        this.stationId = stationId;
+        this.productionTime = productionTime;
+        this.leadTime = leadTime;
+    }
+
+    // Merges the snapshot of the same station from another instance.
+    public StationLatencySnapshot merge(StationLatencySnapshot other) {
+        if (!stationId.equals(other.stationId))
+            throw new IllegalArgumentException("Cannot merge station " + other.stationId + " into station " + stationId + ".");
+
+        return new StationLatencySnapshot(stationId, productionTime.merge(other.productionTime), leadTime.merge(other.leadTime));
+    }
+
+    public String getStationId() {
+        return stationId;
+    }
+
+    public HistogramSnapshot getProductionTime() {
+        return productionTime;
+    }
+
+    public HistogramSnapshot getLeadTime() {
+        return leadTime;
+    }
+
+    @Override
+    public String toString() {
+        return "StationLatencySnapshot{" +
+               "stationId='" + stationId + '\'' +
+               ", productionTime=" + productionTime +
+               ", leadTime=" + leadTime +
+               '}';
+    }
+}
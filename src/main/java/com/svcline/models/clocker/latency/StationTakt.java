@@ -0,0 +1,78 @@
+package com.svcline.models.clocker.latency;
+
+// The measured pace of a station, in seconds, see TaktEstimator.
+public class StationTakt {
+    private String stationId;
+    private long finished;
+    private Double productionTime;
+    private Double cycleTime;
+    private Double throughputPerHour;
+    private Double estimatedProductionTime;
+    private Double productionTimeDeviation;
+    private Double utilization;
+
+    public StationTakt() {
+    }
+
+    public StationTakt(String stationId, long finished, Double productionTime, Double cycleTime, Double throughputPerHour,
+                       Double estimatedProductionTime) {
+        this.stationId = stationId;
+        this.finished = finished;
+        this.productionTime = productionTime;
+        this.cycleTime = cycleTime;
+        this.throughputPerHour = throughputPerHour;
+        this.estimatedProductionTime = estimatedProductionTime;
+
+        if (productionTime != null && estimatedProductionTime != null && estimatedProductionTime > 0)
+            this.productionTimeDeviation = productionTime - estimatedProductionTime;
+        // Share of the cycle the station is working, the bottleneck is the one closest to 1
+        if (productionTime != null && cycleTime != null && cycleTime > 0)
+            this.utilization = productionTime / cycleTime;
+    }
+
+    public String getStationId() {
+        return stationId;
+    }
+
+    public long getFinished() {
+        return finished;
+    }
+
+    public Double getProductionTime() {
+        return productionTime;
+    }
+
+    public Double getCycleTime() {
+        return cycleTime;
+    }
+
+    public Double getThroughputPerHour() {
+        return throughputPerHour;
+    }
+
+    public Double getEstimatedProductionTime() {
+        return estimatedProductionTime;
+    }
+
+    public Double getProductionTimeDeviation() {
+        return productionTimeDeviation;
+    }
+
+    public Double getUtilization() {
+        return utilization;
+    }
+
+    @Override
+    public String toString() {
+        return "StationTakt{" +
+               "stationId='" + stationId + '\'' +
+               ", finished=" + finished +
+               ", productionTime=" + productionTime +
+               ", cycleTime=" + cycleTime +
+               ", throughputPerHour=" + throughputPerHour +
+               ", estimatedProductionTime=" + estimatedProductionTime +
+               ", productionTimeDeviation=" + productionTimeDeviation +
+               ", utilization=" + utilization +
+               '}';
+    }
+}
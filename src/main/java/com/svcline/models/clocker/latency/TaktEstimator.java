@@ -0,0 +1,128 @@
+package com.svcline.models.clocker.latency;
+
+import com.google.cloud.Timestamp;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.svcline.models.Station;
+import com.svcline.models.clocker.Operation;
+import com.svcline.prodline.ProductLineConfiguration;
+import com.svcline.prodline.ProductionLine;
+import com.svcline.prodline.StationGraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/* The measured takt of the line, fed with the clock events of this instance next to StationLatencies.
+ * 1. A station counts an item when it STOPs there. Its production time is the one StationLatencies paired, its cycle
+ *    time the interval between two items it finished. The line counts the items that STOP at the end station, and
+ *    the item production time runs from the START at the start station.
+ * 2. Every event is an O(1) update of a Throughput, the averages and rates are worked out when they are asked for.
+ * 3. In a serial line every station finishes as many items as the slowest one lets through, so their cycle times
+ *    settle on the same value. The bottleneck is the station with the longest production time, as that is the one
+ *    the others wait for. Stations in parallel, see StationGraph, share the items of their step, so a pool is as
+ *    slow as the mean production time of its stations divided by their number, and is named as a whole.
+ */
+public class TaktEstimator {
+    private static final int MAX_ITEMS = 10_000;
+
+    private final ConcurrentHashMap<String, Throughput> stations = new ConcurrentHashMap<>();
+    private final Throughput line = new Throughput();
+    private final Cache<String, Long> itemStarts = CacheBuilder.newBuilder()
+            .maximumSize(MAX_ITEMS)
+            .expireAfterWrite(1, TimeUnit.DAYS)
+            .build();
+
+    // The production time is the one StationLatencies sampled for the event, negative if it sampled none.
+    public void record(ProductionLine productionLine, String itemId, String stationId, Operation operation, Timestamp timestamp,
+                       long productionTimeMs) {
+        long epochMs = TimeUnit.SECONDS.toMillis(timestamp.getSeconds()) + TimeUnit.NANOSECONDS.toMillis(timestamp.getNanos());
+
+        if (operation == Operation.START) {
+            if (stationId.equals(productionLine.getStartStationId()))
+                itemStarts.put(itemId, epochMs);
+
+            return;
+        }
+
+        stations.computeIfAbsent(stationId, k -> new Throughput()).record(epochMs, productionTimeMs);
+
+        if (stationId.equals(productionLine.getEndStationId())) {
+            Long startMs = itemStarts.getIfPresent(itemId);
+            itemStarts.invalidate(itemId);
+            line.record(epochMs, startMs != null ? epochMs - startMs : -1);
+        }
+    }
+
+    // The smoothed production time of the station in seconds, or null before it finished an item it was timed on.
+    public Double productionTimeOf(String stationId) {
+        Throughput throughput = stations.get(stationId);
+        return throughput != null ? throughput.getDurationSeconds() : null;
+    }
+
+    // Estimates are read from the configuration the line runs on now.
+    public LineTakt snapshot(ProductionLine productionLine) {
+        long nowMs = System.currentTimeMillis();
+        TreeMap<String, Throughput> byStation = new TreeMap<>(stations);
+        List<StationTakt> stationTakts = new ArrayList<>(byStation.size());
+        StationGraph graph = productionLine.getStationGraph();
+        TreeMap<String, double[]> byPool = new TreeMap<>();       // Sum and count of the production times
+
+        for (String stationId : byStation.keySet()) {
+            Throughput throughput = byStation.get(stationId);
+            Station station = productionLine.getStationMap() != null ? productionLine.getStation(stationId) : null;
+
+            StationTakt stationTakt = new StationTakt(stationId,
+                                                      throughput.getEvents(),
+                                                      throughput.getDurationSeconds(),
+                                                      throughput.getIntervalSeconds(),
+                                                      throughput.getPerHour(nowMs),
+                                                      station != null ? station.getEstimatedStationProductionTime() : null);
+            stationTakts.add(stationTakt);
+
+            // Items at the service station left the line, it holds up none of the others
+            if (stationTakt.getProductionTime() == null || stationId.equals(productionLine.getServiceStationId()))
+                continue;
+
+            int number = graph != null ? graph.numberOf(stationId) : -1;
+            double[] pool = byPool.computeIfAbsent(number >= 0 ? graph.stationIdAt(graph.poolOf(number)) : stationId, k -> new double[2]);
+            pool[0] += stationTakt.getProductionTime();
+            pool[1]++;
+        }
+
+        String bottleneck = null;
+        double bottleneckTime = 0;
+        for (Map.Entry<String, double[]> pool : byPool.entrySet()) {
+            int number = graph != null ? graph.numberOf(pool.getKey()) : -1;
+            double poolTime = pool.getValue()[0] / pool.getValue()[1] / (number >= 0 ? graph.poolSizeOf(number) : 1);
+            if (bottleneck == null || poolTime > bottleneckTime) {
+                bottleneck = pool.getKey();
+                bottleneckTime = poolTime;
+            }
+        }
+
+        List<String> bottleneckStationIds = new ArrayList<>();
+        int bottleneckNumber = graph != null && bottleneck != null ? graph.numberOf(bottleneck) : -1;
+        if (bottleneckNumber >= 0) {
+            for (int i = 0; i < graph.poolSizeOf(bottleneckNumber); i++) {
+                bottleneckStationIds.add(graph.stationIdAt(graph.poolMemberOf(bottleneckNumber, i)));
+            }
+        } else if (bottleneck != null) {
+            bottleneckStationIds.add(bottleneck);
+        }
+
+        ProductLineConfiguration plc = productionLine.getProductLineConfiguration();
+        return new LineTakt(line.getEvents(),
+                            line.getDurationSeconds(),
+                            line.getIntervalSeconds(),
+                            line.getPerHour(nowMs),
+                            plc != null ? plc.getEstimatedItemProductionTime() : null,
+                            bottleneck,
+                            bottleneckStationIds,
+                            bottleneck != null ? bottleneckTime : null,
+                            stationTakts);
+    }
+}
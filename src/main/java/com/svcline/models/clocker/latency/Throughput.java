@@ -0,0 +1,92 @@
+package com.svcline.models.clocker.latency;
+
+import java.util.concurrent.TimeUnit;
+
+/* The pace of one series of events, like the items finished at a station.
+ * 1. Durations and the intervals between events are smoothed with an EWMA, which is one multiplication per event.
+ * 2. Events are counted into per-minute buckets of a one-hour ring. A bucket is cleared when the ring comes around
+ *    to it, so counting stays O(1) and the rate covers the last hour, or the time since the first event if shorter.
+ */
+class Throughput {
+    static final double ALPHA = 0.2;
+    private static final long BUCKET_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final int BUCKETS = 60;
+    private static final long WINDOW_MS = BUCKET_MS * BUCKETS;
+
+    private final long[] bucketMinutes = new long[BUCKETS];
+    private final int[] bucketCounts = new int[BUCKETS];
+    private long firstMs = -1;
+    private long lastMs = -1;
+    private long events = 0;
+    private double intervalEwmaMs = Double.NaN;
+    private long durations = 0;
+    private double durationEwmaMs = Double.NaN;
+
+    // The duration is what the event took, negative when it is not known.
+    synchronized void record(long epochMs, long durationMs) {
+        long minute = epochMs / BUCKET_MS;
+        int bucket = (int) (minute % BUCKETS);
+        if (bucketMinutes[bucket] != minute) {
+            bucketMinutes[bucket] = minute;
+            bucketCounts[bucket] = 0;
+        }
+        bucketCounts[bucket]++;
+
+        // Clocks of instances are not in step, an event out of order only counts
+        if (lastMs >= 0 && epochMs >= lastMs)
+            intervalEwmaMs = ewma(intervalEwmaMs, epochMs - lastMs);
+        if (firstMs < 0)
+            firstMs = epochMs;
+        lastMs = Math.max(lastMs, epochMs);
+        events++;
+
+        if (durationMs >= 0) {
+            durationEwmaMs = ewma(durationEwmaMs, durationMs);
+            durations++;
+        }
+    }
+
+    synchronized long getEvents() {
+        return events;
+    }
+
+    synchronized long getDurations() {
+        return durations;
+    }
+
+    // In seconds, or null before there was an interval.
+    synchronized Double getIntervalSeconds() {
+        return toSeconds(intervalEwmaMs);
+    }
+
+    synchronized Double getDurationSeconds() {
+        return toSeconds(durationEwmaMs);
+    }
+
+    // Events per hour over the window, or null before a minute of events went by.
+    synchronized Double getPerHour(long nowMs) {
+        if (firstMs < 0)
+            return null;
+
+        long minute = nowMs / BUCKET_MS;
+        long counted = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (minute - bucketMinutes[i] < BUCKETS && bucketMinutes[i] <= minute)
+                counted += bucketCounts[i];
+        }
+
+        long windowMs = Math.min(nowMs - firstMs, nowMs - (minute - BUCKETS + 1) * BUCKET_MS);
+        if (windowMs < BUCKET_MS)
+            return null;
+
+        return counted * (double) TimeUnit.HOURS.toMillis(1) / Math.min(windowMs, WINDOW_MS);
+    }
+
+    private static double ewma(double average, double value) {
+        return Double.isNaN(average) ? value : average + ALPHA * (value - average);
+    }
+
+    private static Double toSeconds(double ms) {
+        return Double.isNaN(ms) ? null : ms / 1000;
+    }
+}
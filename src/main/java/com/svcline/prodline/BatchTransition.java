@@ -0,0 +1,41 @@
+package com.svcline.prodline;
+
+import com.svcline.models.State;
+import com.svcline.models.clocker.Operation;
+
+// A transition sent as part of a batch. The operation tells whether the item is started (PATCH) or
+// stopped (PUT) at the station, since the batch endpoint serves both.
+public class BatchTransition extends Transition {
+    private Operation operation;
+
+    public BatchTransition() {
+    }
+
+    public BatchTransition(String id, String currentStationId, State state, Operation operation) {
+        super(id, currentStationId, state);
+        this.operation = operation;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public void setOperation(Operation operation) {
+        this.operation = operation;
+    }
+
+    @Override
+    public boolean validate() {
+        return super.validate() && this.operation != null;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchTransition{" +
+               "id='" + id + '\'' +
+               ", currentStationId='" + currentStationId + '\'' +
+               ", state=" + state +
+               ", operation=" + operation +
+               '}';
+    }
+}
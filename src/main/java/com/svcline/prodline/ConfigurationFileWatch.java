@@ -0,0 +1,85 @@
+package com.svcline.prodline;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/* Watches a configuration snapshot on disk, the stand-in for the database listener when the line runs offline.
+ * Editors write a file in several steps, so the file is read once its events stop for SETTLE_MS. A file that does
+ * not parse is skipped, and read again on its next change.
+ */
+class ConfigurationFileWatch implements Closeable {
+    private static final Logger logger = Logger.getLogger(ConfigurationFileWatch.class.getName());
+    private static final long SETTLE_MS = 100;
+
+    private final Path file;
+    private final Consumer<ProductLineConfiguration> listener;
+    private final WatchService watchService;
+
+    ConfigurationFileWatch(Path file, Consumer<ProductLineConfiguration> listener) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread thread = new Thread(this::run, "configuration-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                boolean changed = changed(watchService.take());
+
+                // Wait until the writes are done
+                WatchKey more;
+                while ((more = watchService.poll(SETTLE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= changed(more);
+                }
+
+                if (changed)
+                    read();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    // Events are for the whole directory
+    private boolean changed(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (file.getFileName().equals(event.context()))
+                changed = true;
+        }
+        key.reset();
+
+        return changed;
+    }
+
+    private void read() {
+        try {
+            ProductLineConfiguration plc = ConfigurationSnapshot.read(file.toString());
+            if (plc != null)
+                listener.accept(plc);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Configuration file " + file + " could not be read, waiting for the next change.", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
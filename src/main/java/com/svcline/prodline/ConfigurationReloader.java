@@ -0,0 +1,109 @@
+package com.svcline.prodline;
+
+import com.svcline.models.Props;
+import com.svcline.store.Stores;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/* Switches the line to a configuration when it changes, without a restart.
+ * 1. The configuration of the line is watched in the configuration store, Firestore pushes every change of the
+ *    document. Offline, on memory storage with the snapshot in a file, the file is watched instead.
+ * 2. A changed configuration is checked and compiled into a LineLayout before the line switches to it, in one step,
+ *    see ProductionLine.init. A configuration that fails the checks leaves the line as it is.
+ * 3. Requests that started before the switch finish on the layout they started with.
+ */
+public class ConfigurationReloader implements Closeable {
+    private static final Logger logger = Logger.getLogger(ConfigurationReloader.class.getName());
+
+    private final ProductionLine productionLine;
+    private final Props props;
+    private final Stores stores;
+    private final List<Closeable> watches = new ArrayList<>();
+
+    public ConfigurationReloader(ProductionLine productionLine, Props props, Stores stores) {
+        this.productionLine = productionLine;
+        this.props = props;
+        this.stores = stores;
+    }
+
+    public ConfigurationReloader watch() throws IOException {
+        String configId = props.getCurrentlyLoadedConfiguration();
+        Path file = snapshotFile(props.getConfigurationSnapshot());
+
+        if (props.isInMemoryStorage() && file != null) {
+            watches.add(new ConfigurationFileWatch(file, plc -> apply(plc, "file " + file)));
+            logger.info("Reload: watching configuration file " + file + ".");
+        } else {
+            watches.add(stores.getConfigurationStore().watch(configId, plc -> apply(plc, "store")));
+            logger.info("Reload: watching configuration " + configId + " in the store.");
+        }
+
+        return this;
+    }
+
+    // Reads the configuration from the store. Returns true if the line switched to it.
+    public boolean reload() {
+        return apply(stores.getConfigurationStore().read(props.getCurrentlyLoadedConfiguration()), "store");
+    }
+
+    // Returns true if the line switched to the configuration, false if it is the line already or is not valid.
+    public boolean apply(ProductLineConfiguration changed, String source) {
+        String configId = props.getCurrentlyLoadedConfiguration();
+        if (changed == null) {
+            logger.warning("Reload: configuration " + configId + " is missing from the " + source + ", keeping the line as it is.");
+            return false;
+        }
+
+        // Changes come from listener threads, they are applied in turn. Reloaders of other lines do not wait.
+        synchronized (productionLine) {
+            ProductLineConfiguration current = productionLine.getProductLineConfiguration();
+            if (current != null && ConfigurationSnapshot.sameLine(current, changed)) {
+                logger.fine("Reload: configuration " + configId + " from the " + source + " is the line already.");
+                return false;
+            }
+
+            long started = System.nanoTime();
+            try {
+                ProductLineConfiguration plc = new ProductLineConfiguration(stores.getConfigurationStore());
+                plc.loadFrom(changed);
+                productionLine.init(plc, props);
+            } catch (InstantiationException | IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "Reload: configuration " + configId + " from the " + source + " is not valid, keeping the line as it is.", e);
+                return false;
+            }
+
+            logger.info("Reload: line switched to configuration " + configId + " from the " + source + " in " +
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms.");
+            return true;
+        }
+    }
+
+    private static Path snapshotFile(String location) {
+        if (location == null || location.isBlank())
+            return null;
+
+        try {
+            Path path = Path.of(location);
+            return Files.isRegularFile(path) ? path : null;
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Closeable watch : watches) {
+            watch.close();
+        }
+        watches.clear();
+    }
+}
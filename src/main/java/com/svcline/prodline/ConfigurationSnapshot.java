@@ -0,0 +1,74 @@
+package com.svcline.prodline;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Objects;
+
+// A line configuration kept as JSON next to the function, so that the line can boot without waiting for the database.
+// It has the shape of the configuration document in the store, a ProductLineConfiguration with its station map, order,
+// pools and estimate, see line-configuration.example.json. GET /configurations/{configId} returns the station map only.
+public class ConfigurationSnapshot {
+    private static final Gson gson = new Gson();
+
+    private ConfigurationSnapshot() {
+    }
+
+    // Looks for the snapshot on disk first, then on the classpath. Returns null if there is none.
+    public static ProductLineConfiguration read(String location) throws IOException {
+        if (location == null || location.isBlank())
+            return null;
+
+        if (isFile(location)) {
+            try (Reader reader = Files.newBufferedReader(Path.of(location), StandardCharsets.UTF_8)) {
+                return parse(reader, location);
+            }
+        }
+
+        InputStream resourceStream = ConfigurationSnapshot.class.getClassLoader().getResourceAsStream(location);
+        if (resourceStream == null)
+            return null;
+
+        try (Reader reader = new InputStreamReader(resourceStream, StandardCharsets.UTF_8)) {
+            return parse(reader, location);
+        }
+    }
+
+    // Tells whether two configurations describe the same line.
+    public static boolean sameLine(ProductLineConfiguration a, ProductLineConfiguration b) {
+        return gson.toJsonTree(a.getConfiguredStationMap()).equals(gson.toJsonTree(b.getConfiguredStationMap())) &&
+               gson.toJsonTree(a.getConfiguredStationOrder()).equals(gson.toJsonTree(b.getConfiguredStationOrder())) &&
+               gson.toJsonTree(a.getConfiguredStationPools()).equals(gson.toJsonTree(b.getConfiguredStationPools())) &&
+               Objects.equals(a.getEstimatedItemProductionTime(), b.getEstimatedItemProductionTime());
+    }
+
+    private static boolean isFile(String location) {
+        try {
+            return Files.isRegularFile(Path.of(location));
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private static ProductLineConfiguration parse(Reader reader, String location) throws IOException {
+        ProductLineConfiguration plc;
+        try {
+            plc = gson.fromJson(reader, ProductLineConfiguration.class);
+        } catch (JsonParseException e) {
+            throw new IOException("Configuration snapshot " + location + " is not valid.", e);
+        }
+
+        if (plc == null)
+            throw new IOException("Configuration snapshot " + location + " is empty.");
+
+        return plc;
+    }
+}
@@ -0,0 +1,139 @@
+package com.svcline.prodline;
+
+import com.svcline.models.Station;
+import com.svcline.models.StationType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/* One configuration of the line, checked and compiled. A layout does not change once built: a new configuration
+ * gets a new layout, which ProductionLine swaps in as a whole, so a request never sees half of each.
+ */
+public final class LineLayout {
+    private final ProductLineConfiguration productLineConfiguration;
+    private final Map<String, Station> stationMap;
+    private final Map<String, String> stationTransitionMap;
+    private final String startStationId;
+    private final String endStationId;
+    private final String serviceStationId;
+    private final StationGraph stationGraph;
+
+    private LineLayout(ProductLineConfiguration plc, Map<String, Station> stationMap, Map<String, String> stationTransitionMap,
+                       String startStationId, String endStationId, String serviceStationId) {
+        this.productLineConfiguration = plc;
+        this.stationMap = Collections.unmodifiableMap(new HashMap<>(stationMap));
+        this.stationTransitionMap = Collections.unmodifiableMap(new HashMap<>(stationTransitionMap));
+        this.startStationId = startStationId;
+        this.endStationId = endStationId;
+        this.serviceStationId = serviceStationId;
+        this.stationGraph = StationGraph.compile(plc);
+    }
+
+    // Checks the configuration, with the messages init always gave. Nothing is kept of a configuration that fails.
+    public static LineLayout compile(ProductLineConfiguration plc) throws InstantiationException {
+        if (plc == null)
+            throw new InstantiationException("Initialization failed: Provided configuration cannot be null. Terminating execution.");
+
+        StationMap stationMapInit = plc.getConfiguredStationMap();
+        StationOrderMap stationOrderMapInit = plc.getConfiguredStationOrder();
+
+        if (stationMapInit == null || stationMapInit.getStationMap() == null || stationMapInit.getStationMap().isEmpty())
+            throw new InstantiationException("Initialization failed: Station map cannot be empty. Terminating execution.");
+        Map<String, Station> stationMap = stationMapInit.getStationMap();
+
+        if (stationOrderMapInit == null || stationOrderMapInit.getStationOrder() == null || stationOrderMapInit.getStationOrder().isEmpty())
+            throw new InstantiationException("Initialization failed: Station order map cannot be empty. Terminating execution.");
+        Map<String, String> stationTransitionMap = stationOrderMapInit.getStationOrder();
+
+        // It's now safe to check if the station order map consist of existing stations. If not, we exit.
+        for (Map.Entry<String, String> entry : stationTransitionMap.entrySet()) {
+            if (!stationMap.containsKey(entry.getKey()) || !stationMap.containsKey(entry.getValue()))
+                throw new InstantiationException("Initialization failed. Station order map contains non-existant stations. Terminating execution.");
+        }
+
+        // Check if stations are correctly defined, meaning START, END and SERVICE
+        String startStationId = null;
+        String endStationId = null;
+        String serviceStationId = null;
+        for (Station station : stationMap.values()) {
+            if (station.getStationType() == StationType.START)
+                startStationId = station.getId();
+            else if (station.getStationType() == StationType.END)
+                endStationId = station.getId();
+            else if (station.getStationType() == StationType.SERVICE)
+                serviceStationId = station.getId();
+        }
+
+        // We must have three stations
+        if (startStationId == null || endStationId == null || serviceStationId == null)
+            throw new InstantiationException(
+                    "Initialization failed: production line must have only one START, STOP and SERVICE station. Terminating execution.");
+
+        checkStationPools(plc.getConfiguredStationPools(), stationMap, stationTransitionMap);
+
+        return new LineLayout(plc, stationMap, stationTransitionMap, startStationId, endStationId, serviceStationId);
+    }
+
+    /* A pool is a production station of the order map and the production stations in parallel with it. The stations
+     * in parallel are not in the order map themselves, and a station is in one pool at most.
+     */
+    private static void checkStationPools(StationPoolMap stationPoolMap, Map<String, Station> stationMap,
+                                          Map<String, String> stationTransitionMap) throws InstantiationException {
+        if (stationPoolMap == null || stationPoolMap.getStationPools() == null)
+            return;
+
+        Set<String> ordered = new HashSet<>(stationTransitionMap.keySet());
+        ordered.addAll(stationTransitionMap.values());
+
+        Set<String> pooled = new HashSet<>();
+        for (Map.Entry<String, ArrayList<String>> pool : stationPoolMap.getStationPools().entrySet()) {
+            if (!ordered.contains(pool.getKey()))
+                throw new InstantiationException("Initialization failed. Station pool map contains stations not in the station order map. Terminating execution.");
+            if (pool.getValue() == null)
+                continue;
+
+            for (String stationId : pool.getValue()) {
+                if (!stationMap.containsKey(stationId))
+                    throw new InstantiationException("Initialization failed. Station pool map contains non-existant stations. Terminating execution.");
+                if (stationId.equals(pool.getKey()))
+                    continue;
+                if (ordered.contains(stationId) || stationPoolMap.getStationPools().containsKey(stationId) || !pooled.add(stationId))
+                    throw new InstantiationException("Initialization failed: station " + stationId + " is in more than one place of the line. Terminating execution.");
+                if (stationMap.get(pool.getKey()).getStationType() != StationType.PRODUCTION || stationMap.get(stationId).getStationType() != StationType.PRODUCTION)
+                    throw new InstantiationException("Initialization failed: only PRODUCTION stations can work in parallel. Terminating execution.");
+            }
+        }
+    }
+
+    public ProductLineConfiguration getProductLineConfiguration() {
+        return productLineConfiguration;
+    }
+
+    public Map<String, Station> getStationMap() {
+        return stationMap;
+    }
+
+    public Map<String, String> getStationTransitionMap() {
+        return stationTransitionMap;
+    }
+
+    public String getStartStationId() {
+        return startStationId;
+    }
+
+    public String getEndStationId() {
+        return endStationId;
+    }
+
+    public String getServiceStationId() {
+        return serviceStationId;
+    }
+
+    public StationGraph getStationGraph() {
+        return stationGraph;
+    }
+}
@@ -0,0 +1,134 @@
+package com.svcline.prodline;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.svcline.models.Props;
+import com.svcline.store.Stores;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.svcline.store.StoreFutures.unwrap;
+
+/* The production lines this instance serves, by the id of their configuration, so one deployment serves many lines.
+ * 1. The default line is the one of the properties, booted at startup. It is always open.
+ * 2. Another line is opened by the first request for it: its configuration is read and compiled, and it gets stores
+ *    of its own, see Stores.forLine, and measurements of its own. Requests for a line wait for it to open once.
+ * 3. A line without requests for the idle time of the properties is closed. Its configuration watch stops, and its
+ *    cache and measurements go. Clock events it queued are still written, the queue stays with the stores of the line.
+ *    It opens again when asked for.
+ */
+public class LineRegistry {
+    private static final Logger logger = Logger.getLogger(LineRegistry.class.getName());
+
+    private final ProductionLine defaultLine;
+    private final String defaultLineId;
+    private final Props props;
+    private final Cache<String, OpenLine> lines;
+
+    private static final class OpenLine {
+        private final ProductionLine productionLine;
+        private final ConfigurationReloader reloader;
+
+        private OpenLine(ProductionLine productionLine, ConfigurationReloader reloader) {
+            this.productionLine = productionLine;
+            this.reloader = reloader;
+        }
+    }
+
+    public LineRegistry(ProductionLine defaultLine) {
+        this.defaultLine = defaultLine;
+        this.props = defaultLine.getProps();
+        this.defaultLineId = props.getCurrentlyLoadedConfiguration();
+        this.lines = CacheBuilder.newBuilder()
+                .expireAfterAccess(props.getLineIdleMinutes(), TimeUnit.MINUTES)
+                .removalListener(this::closed)
+                .build();
+    }
+
+    // Returns null if there is no configuration for the line. Throws InstantiationException if it is not valid.
+    public ProductionLine get(String lineId) throws InstantiationException {
+        // Idle lines are closed on the next access to the registry
+        lines.cleanUp();
+
+        if (lineId.equals(defaultLineId))
+            return defaultLine;
+
+        try {
+            return lines.get(lineId, () -> open(lineId)).productionLine;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = unwrap(e.getCause());
+            if (cause instanceof NoSuchElementException)
+                return null;
+
+            InstantiationException ie = new InstantiationException("Line " + lineId + " could not be opened: " + cause.getMessage());
+            ie.initCause(cause);
+            throw ie;
+        }
+    }
+
+    // The ids of the open lines, the default line first.
+    public List<String> getOpenLineIds() {
+        List<String> lineIds = new ArrayList<>();
+        lineIds.add(defaultLineId);
+        lineIds.addAll(new TreeSet<>(lines.asMap().keySet()));
+
+        return lineIds;
+    }
+
+    private OpenLine open(String lineId) throws InstantiationException, IOException {
+        long started = System.nanoTime();
+        // Stores of a line are kept for good, so none are made for ids without a configuration
+        ProductLineConfiguration stored = defaultLine.getStores().getConfigurationStore().read(lineId);
+        if (stored == null)
+            throw new NoSuchElementException("No configuration " + lineId + ".");
+
+        Props lineProps = props.forLine(lineId);
+        Stores stores = Stores.forLine(lineProps, lineId);
+        ProductLineConfiguration plc = new ProductLineConfiguration(stores.getConfigurationStore());
+        plc.loadFrom(stored);
+
+        ProductionLine productionLine = new ProductionLine(stores);
+        productionLine.init(plc, lineProps);
+
+        ConfigurationReloader reloader = lineProps.isConfigurationWatched() ? new ConfigurationReloader(productionLine, lineProps, stores).watch() : null;
+
+        CompletableFuture.runAsync(() -> {
+            try {
+                productionLine.getWorkInProgress().rebuild(stores.getLineItemStore());
+            } catch (ExecutionException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }).exceptionally(t -> {
+            logger.log(Level.WARNING, "Lines: could not count the work in progress of line " + lineId + ", counting from zero.", unwrap(t));
+            return null;
+        });
+
+        logger.info("Lines: opened line " + lineId + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms.");
+        return new OpenLine(productionLine, reloader);
+    }
+
+    private void closed(RemovalNotification<String, OpenLine> notification) {
+        String lineId = notification.getKey();
+        OpenLine line = notification.getValue();
+
+        try {
+            if (line.reloader != null)
+                line.reloader.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Lines: could not stop watching the configuration of line " + lineId + ".", e);
+        }
+
+        logger.info("Lines: closed line " + lineId + ", " + notification.getCause() + ".");
+    }
+}
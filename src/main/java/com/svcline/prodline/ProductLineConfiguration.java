@@ -1,12 +1,11 @@
 package com.svcline.prodline;
 
-import com.google.cloud.firestore.Firestore;
 import com.google.cloud.firestore.annotation.Exclude;
 import com.svcline.models.Action;
 import com.svcline.models.State;
 import com.svcline.models.Station;
 import com.svcline.models.StationType;
-import com.svcline.prodline.db.DbProdLineConfiguration;
+import com.svcline.store.ConfigurationStore;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -16,18 +15,20 @@ public class ProductLineConfiguration {
     private String version;
     private StationMap configuredStationMap;
     private StationOrderMap configuredStationOrder;
+    private StationPoolMap configuredStationPools;      // Null in configurations without stations in parallel
     private Double estimatedItemProductionTime;
 
     @Exclude
-    private Firestore firestore;
+    private transient ConfigurationStore configurationStore;
 
     public ProductLineConfiguration() {
     }
 
-    public ProductLineConfiguration(Firestore firestore) throws IOException {
+    public ProductLineConfiguration(ConfigurationStore configurationStore) throws IOException {
         this.configuredStationMap = new StationMap();
         this.configuredStationOrder = new StationOrderMap();
-        this.firestore = firestore;
+        this.configuredStationPools = new StationPoolMap();
+        this.configurationStore = configurationStore;
         this.estimatedItemProductionTime = 0.0;
     }
 
@@ -63,17 +64,27 @@ public class ProductLineConfiguration {
         this.configuredStationOrder = configuredStationOrder;
     }
 
+    public StationPoolMap getConfiguredStationPools() {
+        return configuredStationPools;
+    }
+
+    public void setConfiguredStationPools(StationPoolMap configuredStationPools) {
+        this.configuredStationPools = configuredStationPools;
+    }
+
     public void writeToDb(String configId) {
-        DbProdLineConfiguration prodLineConfiguration = new DbProdLineConfiguration(firestore);
-        prodLineConfiguration.write(configId, this);
+        configurationStore.write(configId, this);
     }
 
     public void loadFromDb(String configId) {
-        DbProdLineConfiguration prodLineConfiguration = new DbProdLineConfiguration(firestore);
-        ProductLineConfiguration plc = prodLineConfiguration.read(configId);
+        loadFrom(configurationStore.read(configId));
+    }
 
+    // Takes over the line layout of a configuration read elsewhere, such as a snapshot.
+    public void loadFrom(ProductLineConfiguration plc) {
         this.configuredStationMap = plc.configuredStationMap;
         this.configuredStationOrder = plc.getConfiguredStationOrder();
+        this.configuredStationPools = plc.getConfiguredStationPools();
         this.estimatedItemProductionTime = plc.getEstimatedItemProductionTime();
     }
 
@@ -119,6 +130,7 @@ public class ProductLineConfiguration {
                "version='" + version + '\'' +
                ", configuredStationMap=" + configuredStationMap +
                ", configuredStationOrder=" + configuredStationOrder +
+               ", configuredStationPools=" + configuredStationPools +
                '}';
     }
 }
\ No newline at end of file
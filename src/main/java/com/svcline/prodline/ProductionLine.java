@@ -1,131 +1,94 @@
 package com.svcline.prodline;
 
-import com.google.auth.oauth2.GoogleCredentials;
-import com.google.cloud.firestore.Firestore;
-import com.google.cloud.firestore.FirestoreOptions;
 import com.svcline.models.*;
+import com.svcline.models.clocker.latency.StationLatencies;
+import com.svcline.models.clocker.latency.TaktEstimator;
+import com.svcline.store.Stores;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
+/* The production line of this instance. The configuration it runs on is a LineLayout, swapped in as a whole by init,
+ * while the stores and live measurements stay with the line across configurations.
+ * A request works on a view of the line pinned to the layout of the moment it started, see pinned, so a configuration
+ * that changes during the request takes effect with the next one.
+ */
 public class ProductionLine {
-    private static final String SERVICE_ACCOUNT = "radinn-rindus-sandbox-27eca0521d8d.json";
-    private static final String PROJECT_ID = "radinn-rindus-sandbox";
-
-    private String startStationId;
-    private String endStationId;
-    private String serviceStationId;
-    private HashMap<String, Station> stationMap;
-    private HashMap<String, String> stationTransitionMap;
-
-    private static Firestore firestore = null;
-    private Props props;
-    private ProductLineConfiguration productLineConfiguration;
-
-    private boolean init = false;
-
-    public ProductionLine() throws IOException {
-        this.stationMap = null;
-        this.startStationId = null;
-        this.serviceStationId = null;
-        this.endStationId = null;
-        this.stationTransitionMap = null;
-        initFirestore();
+    private final AtomicReference<LineLayout> layout;
+    private final LineLayout pinnedLayout;      // Null on the line itself, which follows the latest layout
+
+    private final Stores stores;
+    private volatile Props props;
+    private final StationLatencies stationLatencies;
+    private final TaktEstimator taktEstimator;
+    private final WorkInProgress workInProgress;
+
+    // The stores are fixed for the life of the line, views and listener threads share them without further publication.
+    public ProductionLine(Stores stores) {
+        this.layout = new AtomicReference<>();
+        this.pinnedLayout = null;
+        this.stores = stores;
+        this.stationLatencies = new StationLatencies();
+        this.taktEstimator = new TaktEstimator();
+        this.workInProgress = new WorkInProgress();
     }
 
-    private void initCheck() throws InstantiationException {
-        if (!this.init)
-            throw new InstantiationException("Production line has not been done. Aborting execution.");
+    private ProductionLine(ProductionLine line, LineLayout pinnedLayout) {
+        this.layout = line.layout;
+        this.pinnedLayout = pinnedLayout;
+        this.stores = line.stores;
+        this.props = line.props;
+        this.stationLatencies = line.stationLatencies;
+        this.taktEstimator = line.taktEstimator;
+        this.workInProgress = line.workInProgress;
     }
 
-    private boolean stationOrderCorrect() {
-        for (Map.Entry<String, String> entry : stationTransitionMap.entrySet()) {
-            if (!stationMap.containsKey(entry.getKey()) || !stationMap.containsKey(entry.getValue()))
-                return false;
-        }
+    // The same line, on the layout it has now for as long as the view is used. Views share everything else.
+    public ProductionLine pinned() {
+        return new ProductionLine(this, layout.get());
+    }
 
-        return true;
+    private LineLayout layout() {
+        return pinnedLayout != null ? pinnedLayout : layout.get();
     }
 
-    public ProductLineConfiguration getProductLineConfiguration() {
-        return productLineConfiguration;
+    private LineLayout initCheck() throws InstantiationException {
+        LineLayout current = layout();
+        if (current == null)
+            throw new InstantiationException("Production line has not been done. Aborting execution.");
+
+        return current;
     }
 
-    public void setProductLineConfiguration(ProductLineConfiguration productLineConfiguration) {
-        this.productLineConfiguration = productLineConfiguration;
+    public ProductLineConfiguration getProductLineConfiguration() {
+        LineLayout current = layout();
+        return current != null ? current.getProductLineConfiguration() : null;
     }
 
+    // The line is unchanged if the configuration fails. Views taken before keep the layout they have.
     public void init(ProductLineConfiguration plc, Props props) throws InstantiationException, IOException {
-        // We must have three stations
-        if (plc == null)
-            throw new InstantiationException("Initialization failed: Provided configuration cannot be null. Terminating execution.");
-        this.productLineConfiguration = plc;
-
-        StationMap stationMapInit = plc.getConfiguredStationMap();
-        StationOrderMap stationOrderMapInit = plc.getConfiguredStationOrder();
-
-        if (stationMapInit == null || stationMapInit.getStationMap().isEmpty())
-            throw new InstantiationException("Initialization failed: Station map cannot be empty. Terminating execution.");
-        this.stationMap = stationMapInit.getStationMap();
-
-        if (stationOrderMapInit == null || stationOrderMapInit.getStationOrder().isEmpty())
-            throw new InstantiationException("Initialization failed: Station order map cannot be empty. Terminating execution.");
-        this.stationTransitionMap = stationOrderMapInit.getStationOrder();
-
-        // It's now safe to check if the station order map consist of existing stations. If not, we exit.
-        if (!stationOrderCorrect())
-            throw new InstantiationException("Initialization failed. Station order map contains non-existant stations. Terminating execution.");
-
-        // Check if stations are correctly defined, meaning START, END and SERVICE
-        int start = 0;
-        int end = 0;
-        int service = 0;
-        for (Station station : this.stationMap.values()) {
-            if (station.getStationType() == StationType.START) {
-                this.startStationId = station.getId();
-                start++;
-            } else if (station.getStationType() == StationType.END) {
-                this.endStationId = station.getId();
-                end++;
-            } else if (station.getStationType() == StationType.SERVICE) {
-                this.serviceStationId = station.getId();
-                service++;
-            }
-        }
-
-        // We must have three stations
-        if (start == 0 || end == 0 || service == 0)
-            throw new InstantiationException(
-                    "Initialization failed: production line must have only one START, STOP and SERVICE station. Terminating execution.");
+        LineLayout next = LineLayout.compile(plc);
 
         this.props = props;
-        this.init = true;
+        this.layout.set(next);
     }
 
     public String getStartStationId() {
-        return startStationId;
-    }
-
-    public void setStartStationId(String startStationId) {
-        this.startStationId = startStationId;
+        LineLayout current = layout();
+        return current != null ? current.getStartStationId() : null;
     }
 
     public String getEndStationId() {
-        return endStationId;
-    }
-
-    public void setEndStationId(String endStationId) {
-        this.endStationId = endStationId;
+        LineLayout current = layout();
+        return current != null ? current.getEndStationId() : null;
     }
 
     public String getServiceStationId() {
-        return serviceStationId;
-    }
-
-    public void setServiceStationId(String servicetStationId) {
-        this.serviceStationId = servicetStationId;
+        LineLayout current = layout();
+        return current != null ? current.getServiceStationId() : null;
     }
 
     public Station getStation(String stationId) {
@@ -133,33 +96,29 @@ public class ProductionLine {
             return null;
         }
 
-        return this.stationMap.get(stationId);
+        return layout().getStationMap().get(stationId);
     }
 
-    private String getNextStationId(String currentStationId) {
-        return this.stationTransitionMap.get(currentStationId);
+    // Compiled by init, replaced as a whole when the line is initialized again
+    public StationGraph getStationGraph() {
+        LineLayout current = layout();
+        return current != null ? current.getStationGraph() : null;
     }
 
     public LineItem startProduction(String id) throws InstantiationException {
-        initCheck();
-
-        return new LineItem(id, startStationId, null, State.CREATED);
-    }
+        LineLayout current = initCheck();
 
-    public HashMap<String, Station> getStationMap() {
-        return stationMap;
+        return new LineItem(id, current.getStartStationId(), null, State.CREATED);
     }
 
-    public void setStationMap(HashMap<String, Station> stationMap) {
-        this.stationMap = stationMap;
+    public Map<String, Station> getStationMap() {
+        LineLayout current = layout();
+        return current != null ? current.getStationMap() : null;
     }
 
-    public HashMap<String, String> getStationTransitionMap() {
-        return stationTransitionMap;
-    }
-
-    public void setStationTransitionMap(HashMap<String, String> stationTransitionMap) {
-        this.stationTransitionMap = stationTransitionMap;
+    public Map<String, String> getStationTransitionMap() {
+        LineLayout current = layout();
+        return current != null ? current.getStationTransitionMap() : null;
     }
 
     public Props getProps() {
@@ -170,95 +129,157 @@ public class ProductionLine {
         this.props = props;
     }
 
-    private void initFirestore() throws IOException {
-        if (firestore == null) {
-            InputStream serviceAccount = getClass().getClassLoader().getResourceAsStream(SERVICE_ACCOUNT);
+    public Stores getStores() {
+        return stores;
+    }
 
-            assert serviceAccount != null;
-            FirestoreOptions firestoreOptions =
-                    FirestoreOptions.getDefaultInstance().toBuilder()
-                            .setProjectId(PROJECT_ID)
-                            .setCredentials(GoogleCredentials.fromStream(serviceAccount))
-                            .build();
+    // Live station times of this instance, kept across configuration reloads
+    public StationLatencies getStationLatencies() {
+        return stationLatencies;
+    }
 
-            firestore = firestoreOptions.getService();
-        }
+    public TaktEstimator getTaktEstimator() {
+        return taktEstimator;
     }
 
-    public Firestore getFirestore() {
-        return firestore;
+    public WorkInProgress getWorkInProgress() {
+        return workInProgress;
     }
 
-    private void performStationChecks(LineItem actualItem, LineItem currentLineItem) {
+    /* Suggests where to send an item that passed the station: of the next station and those in parallel with it, the one
+     * that would be done with a new item first.
+     * 1. A station is done with it after its production time for each item it works on, and the new one. The production
+     *    time is the one measured on this instance, or else the estimate of the configuration. A station with neither
+     *    is taken to be as slow as the slowest of the pool, and if no station has one, the fewest items win.
+     * 2. Ties go to the station with fewer items, and then to the first one.
+     * The items come from the counts of this instance, see WorkInProgress, and an item counts once it STARTs at a
+     * station. Items sent on before that do not count, so suggestions asked for at once may name the same station.
+     */
+    public StationDispatch dispatch(String stationId) throws InstantiationException {
+        StationGraph graph = initCheck().getStationGraph();
+        int from = graph.numberOf(stationId);
+        if (from == -1)
+            throw new IllegalStateException("Station " + stationId + " is not part of the production line.");
+
+        int nextStation = graph.nextOf(from);
+        if (nextStation == -1)
+            return new StationDispatch(stationId, null, List.of());
+
+        int size = graph.poolSizeOf(nextStation);
+        long[] working = new long[size];
+        Double[] productionTimes = new Double[size];
+        boolean[] measured = new boolean[size];
+        double slowest = -1;
+        for (int i = 0; i < size; i++) {
+            int member = graph.poolMemberOf(nextStation, i);
+            String memberId = graph.stationIdAt(member);
+
+            working[i] = workInProgress.workingAt(memberId);
+            productionTimes[i] = taktEstimator.productionTimeOf(memberId);
+            measured[i] = productionTimes[i] != null;
+            if (productionTimes[i] == null)
+                productionTimes[i] = graph.stationAt(member).getEstimatedStationProductionTime();
+            if (productionTimes[i] != null)
+                slowest = Math.max(slowest, productionTimes[i]);
+        }
+
+        List<StationLoad> loads = new ArrayList<>(size);
+        int best = -1;
+        double bestFreeIn = 0;
+        for (int i = 0; i < size; i++) {
+            double productionTime = productionTimes[i] != null ? productionTimes[i] : slowest;
+            double freeIn = slowest >= 0 ? productionTime * (working[i] + 1) : working[i] + 1;
+            loads.add(new StationLoad(graph.stationIdAt(graph.poolMemberOf(nextStation, i)), working[i], productionTimes[i], measured[i],
+                                      slowest >= 0 ? freeIn : null));
+
+            if (best == -1 || freeIn < bestFreeIn || freeIn == bestFreeIn && working[i] < working[best]) {
+                best = i;
+                bestFreeIn = freeIn;
+            }
+        }
+
+        return new StationDispatch(stationId, loads.get(best).getStationId(), loads);
+    }
+
+    // The station the item is at, checked against the graph. Throws IllegalStateException if the item cannot move there.
+    private int performStationChecks(StationGraph graph, LineItem actualItem, LineItem currentLineItem) {
         State newState = currentLineItem.getState();
-        Station currentStation = getStation(currentLineItem.getCurrentStationId());
+        int currentStation = graph.numberOf(currentLineItem.getCurrentStationId());
 
-        if (!isInCorrectLineOrder(actualItem, currentLineItem)) {
+        if (!isInCorrectLineOrder(graph, actualItem, currentLineItem)) {
             throw new IllegalStateException("This item is not at the correct production line station. Correct station is: " +
-                                            getNextStationId(actualItem.currentStationId));
+                                            graph.poolStationIdsAt(graph.nextOf(graph.numberOf(actualItem.currentStationId))));
         } else if (actualItem.isScrapped()) {
             throw new IllegalStateException("Scrapped items cannot be processed");
         } else if (actualItem.isDone()) {
             throw new IllegalStateException("Finished items cannot be processed");
-        } else if (!currentStation.allowedState(newState)) {
-            throw new IllegalStateException("State " + newState + " not allowed for station. Allowed states are: " + currentStation.getAllowedStates());
-        } else if (actualItem.isFailed() && !currentStation.isServiceStation()) {
-            throw new IllegalStateException("This item should in the service station. This station is a " + currentStation.getStationType() + ".");
+        } else if (currentStation == -1) {
+            throw new IllegalStateException("Station " + currentLineItem.getCurrentStationId() + " is not part of the production line.");
+        } else if (!graph.allows(currentStation, newState)) {
+            throw new IllegalStateException("State " + newState + " not allowed for station. Allowed states are: " + graph.allowedStatesAt(currentStation));
+        } else if (actualItem.isFailed() && graph.typeAt(currentStation) != StationType.SERVICE) {
+            throw new IllegalStateException("This item should in the service station. This station is a " + graph.typeAt(currentStation) + ".");
         }
+
+        return currentStation;
     }
 
     public LineItem toNextStation(LineItem actualItem, LineItem currentLineItem) throws IllegalStateException, InstantiationException {
-        initCheck();
-
+        StationGraph graph = initCheck().getStationGraph();
         State newState = currentLineItem.getState();
-        Station currentStation = getStation(currentLineItem.getCurrentStationId());
-
-        performStationChecks(actualItem, currentLineItem);
+        int currentStation = performStationChecks(graph, actualItem, currentLineItem);
 
         LineItem lineItem = new LineItem(currentLineItem);
-        switch (newState) {
-            case RETRIED:
+        switch (graph.moveFor(newState, currentStation)) {
+            case BACK_TO_PREVIOUS:
                 lineItem.setPreviousStationId(actualItem.getCurrentStationId());
                 lineItem.setCurrentStationId(actualItem.getPreviousStationId());
                 lineItem.setState(newState);
 
                 break;
 
-            case PASSED:
-                if (currentStation.isEndStation()) {
-                    lineItem.setState(State.FINISHED);
-                    lineItem.setCurrentStationId(this.endStationId);
-                } else if (currentStation.isServiceStation()) {
-                    lineItem.setState(newState);
-                    lineItem.setCurrentStationId(actualItem.getPreviousStationId());
-                } else {
-                    lineItem.setState(newState);
-                    //lineItem.setCurrentStationId(...); We do not set current station ID since the one passed in is correct
-                }
+            case FINISH:
+                lineItem.setState(State.FINISHED);
+                lineItem.setCurrentStationId(graph.stationIdAt(graph.getEnd()));
+                lineItem.setPreviousStationId(actualItem.getPreviousStationId());
+
+                break;
+
+            case LEAVE_SERVICE:
+                lineItem.setState(newState);
+                lineItem.setCurrentStationId(actualItem.getPreviousStationId());
+                lineItem.setPreviousStationId(actualItem.getPreviousStationId());
 
+                break;
+
+            case STAY:
+                // We do not set current station ID since the one passed in is correct
+                lineItem.setState(newState);
                 lineItem.setPreviousStationId(actualItem.getPreviousStationId());
 
                 break;
 
-            case FAILED:
+            case TO_SERVICE:
                 lineItem.setPreviousStationId(currentLineItem.getCurrentStationId());
-                lineItem.setCurrentStationId(this.serviceStationId);    // If we fail we go to the service station
+                lineItem.setCurrentStationId(graph.stationIdAt(graph.getService()));    // If we fail we go to the service station
                 lineItem.setState(newState);
 
                 break;
 
-            case SCRAPED:
-                lineItem.setCurrentStationId(getServiceStationId());
-                lineItem.setPreviousStationId(getServiceStationId());
+            case SCRAP:
+                lineItem.setCurrentStationId(graph.stationIdAt(graph.getService()));
+                lineItem.setPreviousStationId(graph.stationIdAt(graph.getService()));
                 lineItem.setState(newState);
 
                 break;
 
             case FINISHED:
-                lineItem.setCurrentStationId(this.endStationId);
+                lineItem.setCurrentStationId(graph.stationIdAt(graph.getEnd()));
                 lineItem.setPreviousStationId(currentLineItem.getCurrentStationId());
                 lineItem.setState(newState);
 
+                break;
+
             default:
                 // Other states not handled
         }
@@ -266,7 +287,7 @@ public class ProductionLine {
         return lineItem;
     }
 
-    private boolean isInCorrectLineOrder(LineItem actualLineItem, LineItem currentItem) {
+    private static boolean isInCorrectLineOrder(StationGraph graph, LineItem actualLineItem, LineItem currentItem) {
         if (actualLineItem == null || currentItem == null || actualLineItem.getId() == null || currentItem.getCurrentStationId() == null)
             return false;
         else if (actualLineItem.isStarted() && !(currentItem.isPassed() || currentItem.isRetried()))
@@ -276,13 +297,13 @@ public class ProductionLine {
         else if (actualLineItem.isFailed() || actualLineItem.isScrapped())
             return true;    // We do not check failed or scrapped items.
 
-        return currentItem.getCurrentStationId().equals(this.stationTransitionMap.get(actualLineItem.getCurrentStationId()));
+        return graph.leadsTo(graph.numberOf(actualLineItem.getCurrentStationId()), graph.numberOf(currentItem.getCurrentStationId()));
     }
 
     public LineItem fromStation(LineItem actualItem, LineItem currentLineItem) throws InstantiationException {
-        initCheck();
+        StationGraph graph = initCheck().getStationGraph();
 
-        performStationChecks(actualItem, currentLineItem);
+        performStationChecks(graph, actualItem, currentLineItem);
 
         LineItem lineItem = new LineItem(currentLineItem);
         lineItem.setPreviousStationId(actualItem.getCurrentStationId());
@@ -0,0 +1,265 @@
+package com.svcline.prodline;
+
+import com.svcline.models.Action;
+import com.svcline.models.State;
+import com.svcline.models.Station;
+import com.svcline.models.StationType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/* The stations and station order of a configuration, compiled for checking transitions.
+ * 1. Stations are numbered as in the StationIndex of the configuration. What a transition needs of a station, its
+ *    type, the states it allows as a bitmask and the stations before and after it, is kept in arrays by that number.
+ * 2. What a transition does to an item is looked up by the new state and the type of the station, see Move.
+ * 3. Stations in parallel form a pool, named by its station in the order map, see StationPoolMap. Every station of
+ *    a pool has the next and previous stations of the pool, so an item may move into any of them.
+ * 4. The graph does not change once compiled. Lookups allocate nothing, so it is shared by all requests.
+ * Station ids are matched exactly, as in the station map.
+ */
+public final class StationGraph {
+    private static final State[] STATES = State.values();
+    private static final StationType[] STATION_TYPES = StationType.values();
+
+    // What toNextStation does with an item, by new state and type of the station it is at.
+    enum Move {
+        NONE, BACK_TO_PREVIOUS, STAY, FINISH, LEAVE_SERVICE, TO_SERVICE, SCRAP, FINISHED
+    }
+
+    private static final Move[][] MOVES = new Move[STATES.length][STATION_TYPES.length];
+
+    static {
+        for (Move[] moves : MOVES) {
+            Arrays.fill(moves, Move.NONE);
+        }
+
+        for (StationType stationType : STATION_TYPES) {
+            MOVES[State.RETRIED.ordinal()][stationType.ordinal()] = Move.BACK_TO_PREVIOUS;
+            MOVES[State.PASSED.ordinal()][stationType.ordinal()] = Move.STAY;
+            MOVES[State.FAILED.ordinal()][stationType.ordinal()] = Move.TO_SERVICE;
+            MOVES[State.SCRAPED.ordinal()][stationType.ordinal()] = Move.SCRAP;
+            MOVES[State.FINISHED.ordinal()][stationType.ordinal()] = Move.FINISHED;
+        }
+
+        MOVES[State.PASSED.ordinal()][StationType.END.ordinal()] = Move.FINISH;
+        MOVES[State.PASSED.ordinal()][StationType.SERVICE.ordinal()] = Move.LEAVE_SERVICE;
+    }
+
+    private final StationIndex stationIndex;
+    private final Map<String, Integer> numbers;
+    private final Station[] stations;
+    private final StationType[] types;
+    private final int[] allowedStates;
+    private final String[] allowedStatesText;
+    private final int[] next;
+    private final int[] previous;
+    private final int[] pools;
+    private final int[][] poolMembers;
+    private final String[] poolText;
+    private final int start;
+    private final int end;
+    private final int service;
+
+    private StationGraph(StationIndex stationIndex, Map<String, Station> stationMap, Map<String, String> stationOrder,
+                         Map<String, ArrayList<String>> stationPools) {
+        int size = stationIndex.size();
+
+        this.stationIndex = stationIndex;
+        this.numbers = new HashMap<>(size * 2);
+        this.stations = new Station[size];
+        this.types = new StationType[size];
+        this.allowedStates = new int[size];
+        this.allowedStatesText = new String[size];
+        this.next = new int[size];
+        this.previous = new int[size];
+        this.pools = new int[size];
+        this.poolMembers = new int[size][];
+        this.poolText = new String[size];
+        Arrays.fill(next, -1);
+        Arrays.fill(previous, -1);
+
+        int startAt = -1;
+        int endAt = -1;
+        int serviceAt = -1;
+        for (int i = 0; i < size; i++) {
+            String stationId = stationIndex.stationIdAt(i);
+            Station station = stationMap.get(stationId);
+
+            numbers.put(stationId, i);
+            pools[i] = i;
+            poolMembers[i] = new int[]{i};
+            poolText[i] = stationId;
+            stations[i] = station;
+            types[i] = station.getStationType();
+
+            List<State> states = new ArrayList<>();
+            if (station.getAllowedActions() != null) {
+                for (Action action : station.getAllowedActions()) {
+                    states.add(action.getState());
+                    if (action.getState() != null)
+                        allowedStates[i] |= 1 << action.getState().ordinal();
+                }
+            }
+            allowedStatesText[i] = states.toString();
+
+            // The last station of a type wins, as in the checks of ProductionLine.init
+            if (types[i] == StationType.START)
+                startAt = i;
+            else if (types[i] == StationType.END)
+                endAt = i;
+            else if (types[i] == StationType.SERVICE)
+                serviceAt = i;
+        }
+
+        for (Map.Entry<String, String> transition : stationOrder.entrySet()) {
+            int from = numbers.get(transition.getKey());
+            int to = numbers.get(transition.getValue());
+
+            next[from] = to;
+            // The order map is a HashMap, the lowest number keeps the choice independent of its iteration order
+            if (previous[to] == -1 || from < previous[to])
+                previous[to] = from;
+        }
+
+        for (Map.Entry<String, ArrayList<String>> pool : stationPools.entrySet()) {
+            int station = numbers.get(pool.getKey());
+            TreeSet<Integer> members = new TreeSet<>();
+            members.add(station);
+            if (pool.getValue() != null)
+                pool.getValue().forEach(stationId -> members.add(numbers.get(stationId)));
+
+            int[] memberNumbers = members.stream().mapToInt(Integer::intValue).toArray();
+            List<String> memberIds = new ArrayList<>(memberNumbers.length);
+            for (int member : memberNumbers) {
+                memberIds.add(stationIndex.stationIdAt(member));
+            }
+
+            for (int member : memberNumbers) {
+                pools[member] = station;
+                poolMembers[member] = memberNumbers;
+                poolText[member] = String.join(" or ", memberIds);
+                next[member] = next[station];
+                previous[member] = previous[station];
+            }
+        }
+
+        this.start = startAt;
+        this.end = endAt;
+        this.service = serviceAt;
+    }
+
+    // The maps must have been checked, see LineLayout: every station in the order and the pools is in the station map.
+    public static StationGraph compile(ProductLineConfiguration plc) {
+        StationPoolMap stationPoolMap = plc.getConfiguredStationPools();
+
+        return new StationGraph(StationIndex.of(plc),
+                                plc.getConfiguredStationMap().getStationMap(),
+                                plc.getConfiguredStationOrder().getStationOrder(),
+                                stationPoolMap != null && stationPoolMap.getStationPools() != null ? stationPoolMap.getStationPools() : Map.of());
+    }
+
+    public StationIndex getStationIndex() {
+        return stationIndex;
+    }
+
+    // -1 for unknown stations.
+    public int numberOf(String stationId) {
+        if (stationId == null)
+            return -1;
+
+        Integer number = numbers.get(stationId);
+        return number != null ? number : -1;
+    }
+
+    public Station stationAt(int number) {
+        return stations[number];
+    }
+
+    public String stationIdAt(int number) {
+        return number >= 0 ? stationIndex.stationIdAt(number) : null;
+    }
+
+    public StationType typeAt(int number) {
+        return types[number];
+    }
+
+    public boolean allows(int number, State state) {
+        return state != null && (allowedStates[number] & 1 << state.ordinal()) != 0;
+    }
+
+    // As Station.getAllowedStates prints, for error messages.
+    public String allowedStatesAt(int number) {
+        return allowedStatesText[number];
+    }
+
+    // -1 for the last station.
+    public int nextOf(int number) {
+        return number >= 0 ? next[number] : -1;
+    }
+
+    // -1 for the first station. Of stations reached from more than one, the one with the lowest number.
+    public int previousOf(int number) {
+        return number >= 0 ? previous[number] : -1;
+    }
+
+    // Whether an item at the first station moves on to the second, or to a station in parallel with it.
+    public boolean leadsTo(int from, int to) {
+        int nextStation = nextOf(from);
+        return nextStation != -1 && to >= 0 && pools[to] == pools[nextStation];
+    }
+
+    // The number of the station in the order map that stands for the pool of the station.
+    public int poolOf(int number) {
+        return pools[number];
+    }
+
+    // 1 for stations without stations in parallel.
+    public int poolSizeOf(int number) {
+        return poolMembers[number].length;
+    }
+
+    // The stations of a pool in the order of their numbers, from 0 to poolSizeOf.
+    public int poolMemberOf(int number, int member) {
+        return poolMembers[number][member];
+    }
+
+    // The station ids of the pool of the station, for error messages.
+    public String poolStationIdsAt(int number) {
+        return number >= 0 ? poolText[number] : null;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public int getService() {
+        return service;
+    }
+
+    Move moveFor(State state, int number) {
+        return MOVES[state.ordinal()][types[number].ordinal()];
+    }
+
+    public int size() {
+        return stations.length;
+    }
+
+    @Override
+    public String toString() {
+        return "StationGraph{" +
+               "stationIndex=" + stationIndex +
+               ", next=" + Arrays.toString(next) +
+               ", start=" + start +
+               ", end=" + end +
+               ", service=" + service +
+               '}';
+    }
+}
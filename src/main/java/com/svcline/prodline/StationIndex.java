@@ -0,0 +1,70 @@
+package com.svcline.prodline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/* Numbers the stations of a configuration 0..size-1, in the order of their ids, so per-station data can be kept in
+ * arrays. Ids are matched ignoring case, as the clocker matches them. The index does not change once built.
+ */
+public final class StationIndex {
+    private static final StationIndex EMPTY = new StationIndex(Collections.emptyList());
+
+    private final List<String> stationIds;
+    private final Map<String, Integer> indexes;
+
+    private StationIndex(List<String> stationIds) {
+        this.stationIds = Collections.unmodifiableList(stationIds);
+        this.indexes = new HashMap<>(stationIds.size() * 2);
+
+        for (int i = 0; i < stationIds.size(); i++) {
+            indexes.putIfAbsent(keyOf(stationIds.get(i)), i);
+        }
+    }
+
+    // Empty for a configuration without stations.
+    public static StationIndex of(ProductLineConfiguration plc) {
+        if (plc == null || plc.getConfiguredStationMap() == null || plc.getConfiguredStationMap().getStationMap() == null)
+            return EMPTY;
+
+        List<String> stationIds = new ArrayList<>(plc.getConfiguredStationMap().getStationMap().keySet());
+        Collections.sort(stationIds);
+
+        return new StationIndex(stationIds);
+    }
+
+    public static StationIndex empty() {
+        return EMPTY;
+    }
+
+    // -1 for stations not in the configuration.
+    public int indexOf(String stationId) {
+        if (stationId == null)
+            return -1;
+
+        Integer index = indexes.get(keyOf(stationId));
+        return index != null ? index : -1;
+    }
+
+    public String stationIdAt(int index) {
+        return stationIds.get(index);
+    }
+
+    public int size() {
+        return stationIds.size();
+    }
+
+    private static String keyOf(String stationId) {
+        return stationId.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public String toString() {
+        return "StationIndex{" +
+               "stationIds=" + stationIds +
+               '}';
+    }
+}
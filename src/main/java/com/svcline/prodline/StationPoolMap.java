@@ -0,0 +1,34 @@
+package com.svcline.prodline;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// Stations that work in parallel with a station of the order map, by the id of that station. See StationGraph.
+public class StationPoolMap {
+    private HashMap<String, ArrayList<String>> stationPools;
+
+    public StationPoolMap() {
+        stationPools = new HashMap<>();
+    }
+
+    public void addPoolMember(String stationId, String parallelStationId) {
+        ArrayList<String> members = stationPools.computeIfAbsent(stationId, k -> new ArrayList<>());
+        if (!members.contains(parallelStationId))
+            members.add(parallelStationId);
+    }
+
+    public HashMap<String, ArrayList<String>> getStationPools() {
+        return stationPools;
+    }
+
+    public void setStationPools(HashMap<String, ArrayList<String>> stationPools) {
+        this.stationPools = stationPools;
+    }
+
+    @Override
+    public String toString() {
+        return "StationPoolMap{" +
+               "stationPools=" + stationPools +
+               '}';
+    }
+}
@@ -0,0 +1,68 @@
+package com.svcline.prodline;
+
+import com.svcline.models.LineItem;
+
+// Outcome of a single transition within a batch. Either the resulting item or an error is set.
+public class TransitionResult {
+    private String id;
+    private int code;
+    private LineItem item;
+    private String errorMessage;
+
+    public TransitionResult() {
+    }
+
+    public TransitionResult(String id, int code, LineItem item) {
+        this.id = id;
+        this.code = code;
+        this.item = item;
+    }
+
+    public TransitionResult(String id, int code, String errorMessage) {
+        this.id = id;
+        this.code = code;
+        this.errorMessage = errorMessage;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public void setCode(int code) {
+        this.code = code;
+    }
+
+    public LineItem getItem() {
+        return item;
+    }
+
+    public void setItem(LineItem item) {
+        this.item = item;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    @Override
+    public String toString() {
+        return "TransitionResult{" +
+               "id='" + id + '\'' +
+               ", code=" + code +
+               ", item=" + item +
+               ", errorMessage='" + errorMessage + '\'' +
+               '}';
+    }
+}
@@ -0,0 +1,157 @@
+package com.svcline.prodline;
+
+import com.svcline.models.LineItem;
+import com.svcline.models.LineWip;
+import com.svcline.models.State;
+import com.svcline.models.StationWip;
+import com.svcline.store.LineItemStore;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.logging.Logger;
+
+/* Counts the items at every station by state, so the line can be looked at without reading every item.
+ * 1. Every item written by this instance moves its count, from the station and state it was read at to the ones it
+ *    was written with. Counting is a LongAdder increment, which threads do not contend on.
+ * 2. The counts are rebuilt from the store after startup, see rebuild. Moves while the store is read count into the
+ *    rebuilt counts as well, so an item that moved during the rebuild may be counted at both places until the next.
+ *    Moves hold a shared lock, which only the switch to the rebuilt counts waits for, so no move is lost in it.
+ * The counts only see the writes of this instance. With more instances, each one is exact as of its last rebuild.
+ */
+public class WorkInProgress {
+    private static final Logger logger = Logger.getLogger(WorkInProgress.class.getName());
+    private static final State[] STATES = State.values();
+
+    private volatile Counts counts = new Counts();
+    private volatile Counts movedDuringRebuild = null;
+    private volatile Instant countedSince = null;
+    private final StampedLock switching = new StampedLock();
+
+    private static final class Counts {
+        private final ConcurrentHashMap<String, LongAdder[]> byStation = new ConcurrentHashMap<>();
+
+        private void add(LineItem lineItem, long delta) {
+            if (lineItem == null || lineItem.getCurrentStationId() == null || lineItem.getState() == null)
+                return;
+
+            byStation.computeIfAbsent(lineItem.getCurrentStationId(), k -> newAdders())[lineItem.getState().ordinal()].add(delta);
+        }
+
+        private void addAll(Counts other) {
+            other.byStation.forEach((stationId, adders) -> {
+                LongAdder[] into = byStation.computeIfAbsent(stationId, k -> newAdders());
+                for (int i = 0; i < adders.length; i++) {
+                    into[i].add(adders[i].sum());
+                }
+            });
+        }
+
+        private static LongAdder[] newAdders() {
+            LongAdder[] adders = new LongAdder[STATES.length];
+            for (int i = 0; i < adders.length; i++) {
+                adders[i] = new LongAdder();
+            }
+
+            return adders;
+        }
+    }
+
+    // Either item may be null, for items created or deleted.
+    public void moved(LineItem from, LineItem to) {
+        if (from != null && to != null && from.getState() == to.getState() &&
+            from.getCurrentStationId() != null && from.getCurrentStationId().equals(to.getCurrentStationId()))
+            return;
+
+        long stamp = switching.readLock();
+        try {
+            count(counts, from, to);
+
+            Counts during = movedDuringRebuild;
+            if (during != null)
+                count(during, from, to);
+        } finally {
+            switching.unlockRead(stamp);
+        }
+    }
+
+    /* Counts the items in the store from scratch, and then takes the counts over. Blocks until the store was read.
+     * Meant to run once the line is up, while it is already serving.
+     */
+    public void rebuild(LineItemStore lineItemStore) throws ExecutionException, InterruptedException {
+        Counts during = new Counts();
+        movedDuringRebuild = during;
+
+        try {
+            Counts rebuilt = new Counts();
+            long[] items = {0};
+            lineItemStore.stream(lineItem -> {
+                rebuilt.add(lineItem, 1);
+                items[0]++;
+            });
+
+            // Moves wait while the counts switch, each one is in the old counts and during, or in the rebuilt ones
+            long stamp = switching.writeLock();
+            try {
+                rebuilt.addAll(during);
+                counts = rebuilt;
+                movedDuringRebuild = null;
+            } finally {
+                switching.unlockWrite(stamp);
+            }
+
+            countedSince = Instant.now();
+            logger.info("Work in progress rebuilt from " + items[0] + " items.");
+        } finally {
+            movedDuringRebuild = null;
+        }
+    }
+
+    // The items being worked on at a station: started there, or sent back to it to retry.
+    public long workingAt(String stationId) {
+        LongAdder[] adders = counts.byStation.get(stationId);
+        if (adders == null)
+            return 0;
+
+        return Math.max(0, adders[State.STARTED.ordinal()].sum()) + Math.max(0, adders[State.RETRIED.ordinal()].sum());
+    }
+
+    // One entry per station that ever had an item, by station id.
+    public LineWip get() {
+        TreeMap<String, LongAdder[]> byStation = new TreeMap<>(counts.byStation);
+        List<StationWip> stations = new ArrayList<>(byStation.size());
+        long lineInProgress = 0;
+
+        for (Map.Entry<String, LongAdder[]> entry : byStation.entrySet()) {
+            EnumMap<State, Long> states = new EnumMap<>(State.class);
+            long inProgress = 0;
+
+            for (State state : STATES) {
+                // Items written elsewhere before they were counted here may take a count below zero
+                long count = Math.max(0, entry.getValue()[state.ordinal()].sum());
+                states.put(state, count);
+
+                if (state != State.FINISHED && state != State.SCRAPED)
+                    inProgress += count;
+            }
+
+            stations.add(new StationWip(entry.getKey(), states, inProgress));
+            lineInProgress += inProgress;
+        }
+
+        Instant since = countedSince;
+        return new LineWip(since != null ? since.toString() : null, movedDuringRebuild != null, lineInProgress, stations);
+    }
+
+    private static void count(Counts counts, LineItem from, LineItem to) {
+        counts.add(from, -1);
+        counts.add(to, 1);
+    }
+}
@@ -3,24 +3,33 @@ package com.svcline.prodline.db;
 import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.DocumentSnapshot;
 import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.ListenerRegistration;
 import com.svcline.prodline.ProductLineConfiguration;
+import com.svcline.store.ConfigurationStore;
 
+import java.io.Closeable;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-public class DbProdLineConfiguration {
+public class DbProdLineConfiguration implements ConfigurationStore {
+    private static final Logger logger = Logger.getLogger(DbProdLineConfiguration.class.getName());
     private static final String COLLECTION = "productLineConfiguration";
     private static final String ITEM_ID = "demo-configuration";
 
-    private Firestore db;
+    private final Firestore db;
 
     public DbProdLineConfiguration(Firestore firestore) {
         db = firestore;
     }
 
+    @Override
     public void write(String configId, ProductLineConfiguration configuration) {
         db.collection(COLLECTION).document(configId).set(configuration);
     }
 
+    @Override
     public ProductLineConfiguration read(String id) {
         ApiFuture<DocumentSnapshot> query = db.collection(COLLECTION).document(id).get();
         try {
@@ -32,4 +41,19 @@ public class DbProdLineConfiguration {
             return null;
         }
     }
+
+    // Firestore pushes the document on every change, the listener is kept open while the instance runs.
+    @Override
+    public Closeable watch(String configId, Consumer<ProductLineConfiguration> listener) {
+        ListenerRegistration registration = db.collection(COLLECTION).document(configId).addSnapshotListener((document, error) -> {
+            if (error != null) {
+                logger.log(Level.WARNING, "Listening to configuration " + configId + " failed.", error);
+                return;
+            }
+
+            listener.accept(document != null && document.exists() ? document.toObject(ProductLineConfiguration.class) : null);
+        });
+
+        return registration::remove;
+    }
 }
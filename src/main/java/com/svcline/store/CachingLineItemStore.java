@@ -0,0 +1,213 @@
+package com.svcline.store;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.svcline.models.LineItem;
+import com.svcline.models.LineItemCacheStats;
+import com.svcline.models.LineItemPage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/* Write-through cache of line items in front of another store. Items are cached when written and when read,
+ * bounded by size (least recently used go first) and by time since they were cached.
+ *
+ * Every cache entry carries a stamp. Reads take theirs when issued, writes when the store confirmed them, and an
+ * update only replaces an entry with an older stamp. A read that was overtaken by a write cannot put the old item back.
+ *
+ * Other instances write to the same store, so an entry can be stale for at most the TTL. Conditional writes based on
+ * a stale entry are rejected by the store, which drops the entry, so the caller's retry reads the current item. Scans (getAll, getPage and
+ * stream) go to the store and are not cached, to keep them from pushing out the items currently on the line.
+ */
+public class CachingLineItemStore implements LineItemStore {
+    private final LineItemStore delegate;
+    private final Cache<String, Entry> cache;
+    private final AtomicLong stamps = new AtomicLong();
+
+    private static final class Entry {
+        private final LineItem lineItem;    // Null for a cached delete
+        private final long stamp;
+
+        private Entry(LineItem lineItem, long stamp) {
+            this.lineItem = lineItem;
+            this.stamp = stamp;
+        }
+    }
+
+    public CachingLineItemStore(LineItemStore delegate, long maximumSize, long ttlSeconds) {
+        this.delegate = delegate;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public CompletableFuture<Void> set(LineItem lineItem) {
+        String itemId = lineItem.getId();
+        LineItem cached = new LineItem(lineItem);
+
+        return delegate.set(lineItem).whenComplete((done, t) -> {
+            if (t == null)
+                update(itemId, cached, stamps.incrementAndGet());
+            else
+                cache.invalidate(itemId);   // We do not know what the store holds now
+        });
+    }
+
+    @Override
+    public CompletableFuture<LineItem> create(LineItem lineItem) {
+        String itemId = lineItem.getId();
+
+        return delegate.create(lineItem).whenComplete((written, t) -> {
+            if (t == null)
+                update(itemId, new LineItem(written), stamps.incrementAndGet());
+            else
+                cache.invalidate(itemId);
+        });
+    }
+
+    @Override
+    public CompletableFuture<LineItem> update(LineItem lineItem) {
+        String itemId = lineItem.getId();
+
+        return delegate.update(lineItem).whenComplete((written, t) -> {
+            if (t == null)
+                update(itemId, new LineItem(written), stamps.incrementAndGet());
+            else
+                cache.invalidate(itemId);
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<LineItem>> updateAll(Collection<LineItem> lineItems) {
+        ArrayList<String> itemIds = new ArrayList<>(lineItems.size());
+        for (LineItem lineItem : lineItems) {
+            itemIds.add(lineItem.getId());
+        }
+
+        return delegate.updateAll(lineItems).whenComplete((written, t) -> {
+            if (t == null) {
+                long stamp = stamps.incrementAndGet();
+                for (LineItem lineItem : written) {
+                    update(lineItem.getId(), new LineItem(lineItem), stamp);
+                }
+            } else {
+                cache.invalidateAll(itemIds);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteFor(String itemId) {
+        return delegate.deleteFor(itemId).whenComplete((done, t) -> {
+            if (t == null)
+                update(itemId, null, stamps.incrementAndGet());
+            else
+                cache.invalidate(itemId);
+        });
+    }
+
+    @Override
+    public CompletableFuture<LineItem> getFor(String itemId) {
+        Entry entry = cache.getIfPresent(itemId);
+        if (entry != null)
+            return CompletableFuture.completedFuture(copyOf(entry.lineItem));
+
+        long stamp = stamps.incrementAndGet();
+
+        return delegate.getFor(itemId).thenApply(lineItem -> {
+            if (lineItem != null)
+                update(itemId, new LineItem(lineItem), stamp);
+
+            return lineItem;
+        });
+    }
+
+    @Override
+    public CompletableFuture<HashMap<String, LineItem>> getAllFor(Collection<String> itemIds) {
+        HashMap<String, LineItem> found = new HashMap<>();
+        ArrayList<String> missing = new ArrayList<>();
+
+        for (String itemId : itemIds) {
+            Entry entry = cache.getIfPresent(itemId);
+            if (entry == null)
+                missing.add(itemId);
+            else if (entry.lineItem != null)
+                found.put(itemId, copyOf(entry.lineItem));
+        }
+
+        if (missing.isEmpty())
+            return CompletableFuture.completedFuture(found);
+
+        long stamp = stamps.incrementAndGet();
+
+        return delegate.getAllFor(missing).thenApply(lineItems -> {
+            for (LineItem lineItem : lineItems.values()) {
+                update(lineItem.getId(), new LineItem(lineItem), stamp);
+            }
+
+            found.putAll(lineItems);
+            return found;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> setAll(Collection<LineItem> lineItems) {
+        ArrayList<LineItem> cached = new ArrayList<>(lineItems.size());
+        for (LineItem lineItem : lineItems) {
+            cached.add(new LineItem(lineItem));
+        }
+
+        return delegate.setAll(lineItems).whenComplete((done, t) -> {
+            long stamp = stamps.incrementAndGet();
+            for (LineItem lineItem : cached) {
+                if (t == null)
+                    update(lineItem.getId(), lineItem, stamp);
+                else
+                    cache.invalidate(lineItem.getId());
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<ArrayList<LineItem>> getAll() {
+        return delegate.getAll();
+    }
+
+    @Override
+    public CompletableFuture<LineItemPage> getPage(int pageSize, String pageToken) {
+        return delegate.getPage(pageSize, pageToken);
+    }
+
+    @Override
+    public void stream(Consumer<LineItem> consumer) throws ExecutionException, InterruptedException {
+        delegate.stream(consumer);
+    }
+
+    public void invalidate(String itemId) {
+        cache.invalidate(itemId);
+    }
+
+    public LineItemCacheStats getStats() {
+        com.google.common.cache.CacheStats stats = cache.stats();
+
+        return new LineItemCacheStats(stats.hitCount(), stats.missCount(), stats.evictionCount(), cache.size());
+    }
+
+    private void update(String itemId, LineItem lineItem, long stamp) {
+        cache.asMap().compute(itemId, (k, current) -> current == null || current.stamp < stamp ? new Entry(lineItem, stamp) : current);
+    }
+
+    private static LineItem copyOf(LineItem lineItem) {
+        return lineItem != null ? new LineItem(lineItem) : null;
+    }
+}
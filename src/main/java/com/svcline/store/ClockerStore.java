@@ -0,0 +1,49 @@
+package com.svcline.store;
+
+import com.svcline.models.clocker.Clocker;
+import com.svcline.models.clocker.ClockerPage;
+import com.svcline.models.clocker.StationTiming;
+import com.svcline.models.clocker.Times;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+// Storage of the measured station times per item, see DbClockerFacade, DbClockerEventFacade and MemClockerStore.
+// Calls return at once, failures are reported through the returned future.
+public interface ClockerStore {
+    CompletableFuture<Void> set(Clocker clocker);
+
+    /* Adds timings to the clocker of an item. The given clocker, without times, is stored first if the item has none.
+     * By default the clocker is read, the timings are added and it is written back whole, skipping the timings it
+     * refuses. Stores that keep timings as records of their own write only the timings, see DbClockerEventFacade.
+     * Appends for the same item must not overlap.
+     */
+    default CompletableFuture<Void> append(Clocker newClocker, List<StationTiming> timings) {
+        return getFor(newClocker.getItemId()).thenCompose(stored -> {
+            Clocker clocker = stored != null ? stored : newClocker;
+
+            for (StationTiming skipped : clocker.addTimes(timings)) {
+                Logger.getLogger(ClockerStore.class.getName())
+                      .warning("Skipped " + skipped.getOperation() + " at " + skipped.getStationId() + " for item " + clocker.getItemId() + ".");
+            }
+
+            return set(clocker);
+        });
+    }
+
+    // Completes with null if the clocker does not exist.
+    CompletableFuture<ArrayList<Times>> getTimesFor(String itemId);
+
+    // Completes with null if the clocker does not exist.
+    CompletableFuture<Clocker> getFor(String itemId);
+
+    // Completes with null if there are no clockers.
+    CompletableFuture<ArrayList<Clocker>> getAll();
+
+    // Pages are ordered by item id, and the id of the last item is the token for the next page.
+    CompletableFuture<ClockerPage> getPage(int pageSize, String pageToken);
+
+    CompletableFuture<Void> deleteFor(String itemId);
+}
@@ -0,0 +1,19 @@
+package com.svcline.store;
+
+import com.svcline.prodline.ProductLineConfiguration;
+
+import java.io.Closeable;
+import java.util.function.Consumer;
+
+// Storage of production line configurations, see DbProdLineConfiguration and MemConfigurationStore.
+public interface ConfigurationStore {
+    void write(String configId, ProductLineConfiguration configuration);
+
+    // Returns null if the configuration does not exist or could not be read.
+    ProductLineConfiguration read(String configId);
+
+    /* Calls the listener with the configuration whenever it is written, and once with the configuration as it is
+     * now, or null if it does not exist. Listeners are called one at a time. Closing the returned handle stops them.
+     */
+    Closeable watch(String configId, Consumer<ProductLineConfiguration> listener);
+}
@@ -0,0 +1,54 @@
+package com.svcline.store;
+
+import com.svcline.models.LineItem;
+import com.svcline.models.LineItemPage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+// Storage of the items moving through the line, see DbLineFacacde and MemLineItemStore.
+// Calls return at once, failures are reported through the returned future.
+public interface LineItemStore {
+    int MAX_BATCH_SIZE = 500;   // Firestore limit for writes in one batch, applied to all stores alike
+
+    // Unconditional write, the item replaces whatever is stored.
+    CompletableFuture<Void> set(LineItem lineItem);
+
+    /* Conditional writes. Each completes with the items as stored, carrying their new version, or fails with a
+     * StoreConflictException if the condition did not hold, in which case nothing was written:
+     * - create writes the item only if no item with its id exists,
+     * - update writes the item only if the stored one is unchanged since it was read, see LineItem.writeOver,
+     * - updateAll does the same for all items atomically.
+     */
+    CompletableFuture<LineItem> create(LineItem lineItem);
+
+    CompletableFuture<LineItem> update(LineItem lineItem);
+
+    CompletableFuture<List<LineItem>> updateAll(Collection<LineItem> lineItems);
+
+    CompletableFuture<Void> deleteFor(String itemId);
+
+    // Completes with null if the item does not exist.
+    CompletableFuture<LineItem> getFor(String itemId);
+
+    // Items not found are left out of the returned map.
+    CompletableFuture<HashMap<String, LineItem>> getAllFor(Collection<String> itemIds);
+
+    // Writes all items atomically. Either all items are written or none.
+    CompletableFuture<Void> setAll(Collection<LineItem> lineItems);
+
+    // Completes with null if there are no items.
+    CompletableFuture<ArrayList<LineItem>> getAll();
+
+    // Pages are ordered by item id, and the id of the last item is the token for the next page.
+    CompletableFuture<LineItemPage> getPage(int pageSize, String pageToken);
+
+    // Hands every item to the consumer without collecting them. Unlike the other calls this blocks until all
+    // items are consumed, since it is meant to be called while writing a response.
+    void stream(Consumer<LineItem> consumer) throws ExecutionException, InterruptedException;
+}
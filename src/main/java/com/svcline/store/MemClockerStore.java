@@ -0,0 +1,78 @@
+package com.svcline.store;
+
+import com.svcline.models.clocker.Clocker;
+import com.svcline.models.clocker.ClockerPage;
+import com.svcline.models.clocker.Times;
+
+import java.util.ArrayList;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-memory clockers for local runs and benchmarks. Clockers are copied in and out, see Clocker(Clocker).
+public class MemClockerStore implements ClockerStore {
+    private final ConcurrentHashMap<String, Clocker> clockers = new ConcurrentHashMap<>();
+
+    // All calls complete at once, on the calling thread.
+    @Override
+    public CompletableFuture<Void> set(Clocker clocker) {
+        clockers.put(clocker.getItemId(), new Clocker(clocker));
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<ArrayList<Times>> getTimesFor(String itemId) {
+        Clocker clocker = copyOf(itemId);
+
+        return CompletableFuture.completedFuture(clocker != null ? clocker.getTimesList() : null);
+    }
+
+    @Override
+    public CompletableFuture<Clocker> getFor(String itemId) {
+        return CompletableFuture.completedFuture(copyOf(itemId));
+    }
+
+    @Override
+    public CompletableFuture<ArrayList<Clocker>> getAll() {
+        if (clockers.isEmpty())
+            return CompletableFuture.completedFuture(null);
+
+        ArrayList<Clocker> all = new ArrayList<>();
+        for (Clocker clocker : clockers.values()) {
+            all.add(new Clocker(clocker));
+        }
+
+        return CompletableFuture.completedFuture(all);
+    }
+
+    @Override
+    public CompletableFuture<ClockerPage> getPage(int pageSize, String pageToken) {
+        TreeSet<String> itemIds = new TreeSet<>(clockers.keySet());
+        ArrayList<Clocker> page = new ArrayList<>();
+
+        for (String itemId : pageToken != null && !pageToken.isBlank() ? itemIds.tailSet(pageToken, false) : itemIds) {
+            Clocker clocker = copyOf(itemId);
+            if (clocker != null)
+                page.add(clocker);
+            if (page.size() == pageSize)
+                break;
+        }
+
+        String nextPageToken = page.size() == pageSize ? page.get(page.size() - 1).getItemId() : null;
+        return CompletableFuture.completedFuture(new ClockerPage(page, nextPageToken));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteFor(String itemId) {
+        clockers.remove(itemId);
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private Clocker copyOf(String itemId) {
+        Clocker clocker = clockers.get(itemId);
+
+        return clocker != null ? new Clocker(clocker) : null;
+    }
+}
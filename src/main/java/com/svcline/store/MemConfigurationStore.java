@@ -0,0 +1,44 @@
+package com.svcline.store;
+
+import com.svcline.prodline.ProductLineConfiguration;
+
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// In-memory configurations for local runs and benchmarks.
+public class MemConfigurationStore implements ConfigurationStore {
+    private final ConcurrentHashMap<String, ProductLineConfiguration> configurations = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CopyOnWriteArrayList<Consumer<ProductLineConfiguration>>> listeners = new ConcurrentHashMap<>();
+
+    // Listeners are called on the writing thread.
+    @Override
+    public void write(String configId, ProductLineConfiguration configuration) {
+        configurations.put(configId, configuration);
+
+        CopyOnWriteArrayList<Consumer<ProductLineConfiguration>> watching = listeners.get(configId);
+        if (watching != null)
+            watching.forEach(listener -> listener.accept(configuration));
+    }
+
+    @Override
+    public ProductLineConfiguration read(String configId) {
+        return configurations.get(configId);
+    }
+
+    @Override
+    public Closeable watch(String configId, Consumer<ProductLineConfiguration> listener) {
+        // Serialized, as Firestore calls its listeners
+        Consumer<ProductLineConfiguration> serialized = configuration -> {
+            synchronized (listener) {
+                listener.accept(configuration);
+            }
+        };
+
+        listeners.computeIfAbsent(configId, k -> new CopyOnWriteArrayList<>()).add(serialized);
+        serialized.accept(configurations.get(configId));
+
+        return () -> listeners.get(configId).remove(serialized);
+    }
+}
@@ -0,0 +1,161 @@
+package com.svcline.store;
+
+import com.svcline.models.LineItem;
+import com.svcline.models.LineItemPage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+// In-memory line items for local runs and benchmarks. Items are copied in and out, so callers never share
+// an instance with the store. The map is sorted by id, which gives the same page order as Firestore.
+// All writes are serialized on the store, so plain writes and deletes cannot slip in between the version check
+// of a conditional write and its write. This also makes updateAll atomic.
+public class MemLineItemStore implements LineItemStore {
+    private final ConcurrentSkipListMap<String, LineItem> lineItems = new ConcurrentSkipListMap<>();
+
+    // All calls complete at once, on the calling thread.
+    @Override
+    public synchronized CompletableFuture<Void> set(LineItem lineItem) {
+        lineItems.put(lineItem.getId(), new LineItem(lineItem));
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public synchronized CompletableFuture<LineItem> create(LineItem lineItem) {
+        if (lineItems.containsKey(lineItem.getId()))
+            return CompletableFuture.failedFuture(new StoreConflictException("Item already exists for id " + lineItem.getId() + "."));
+
+        LineItem written = new LineItem(lineItem);
+        written.setVersion(1);
+        lineItems.put(written.getId(), written);
+
+        return CompletableFuture.completedFuture(new LineItem(written));
+    }
+
+    @Override
+    public synchronized CompletableFuture<LineItem> update(LineItem lineItem) {
+        if (!isUnchanged(lineItem))
+            return CompletableFuture.failedFuture(new StoreConflictException("Item changed since read for id " + lineItem.getId() + "."));
+
+        return CompletableFuture.completedFuture(write(lineItem));
+    }
+
+    @Override
+    public synchronized CompletableFuture<List<LineItem>> updateAll(Collection<LineItem> items) {
+        if (items.size() > MAX_BATCH_SIZE)
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Cannot write more than " + MAX_BATCH_SIZE + " items in one batch."));
+
+        for (LineItem lineItem : items) {
+            if (!isUnchanged(lineItem))
+                return CompletableFuture.failedFuture(new StoreConflictException("Item changed since read for id " + lineItem.getId() + "."));
+        }
+
+        ArrayList<LineItem> written = new ArrayList<>(items.size());
+        for (LineItem lineItem : items) {
+            written.add(write(lineItem));
+        }
+
+        return CompletableFuture.completedFuture(written);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> deleteFor(String itemId) {
+        lineItems.remove(itemId);
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<LineItem> getFor(String itemId) {
+        return CompletableFuture.completedFuture(copyOf(itemId));
+    }
+
+    @Override
+    public CompletableFuture<HashMap<String, LineItem>> getAllFor(Collection<String> itemIds) {
+        HashMap<String, LineItem> found = new HashMap<>();
+
+        for (String itemId : itemIds) {
+            LineItem lineItem = copyOf(itemId);
+            if (lineItem != null)
+                found.put(itemId, lineItem);
+        }
+
+        return CompletableFuture.completedFuture(found);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> setAll(Collection<LineItem> items) {
+        if (items.size() > MAX_BATCH_SIZE)
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Cannot write more than " + MAX_BATCH_SIZE + " items in one batch."));
+
+        for (LineItem lineItem : items) {
+            lineItems.put(lineItem.getId(), new LineItem(lineItem));
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<ArrayList<LineItem>> getAll() {
+        if (lineItems.isEmpty())
+            return CompletableFuture.completedFuture(null);
+
+        ArrayList<LineItem> all = new ArrayList<>();
+        stream(all::add);
+
+        return CompletableFuture.completedFuture(all);
+    }
+
+    @Override
+    public CompletableFuture<LineItemPage> getPage(int pageSize, String pageToken) {
+        Map<String, LineItem> tail = pageToken != null && !pageToken.isBlank() ? lineItems.tailMap(pageToken, false) : lineItems;
+        ArrayList<LineItem> page = new ArrayList<>(Math.min(pageSize, 64));
+
+        for (LineItem lineItem : tail.values()) {
+            if (page.size() == pageSize)
+                break;
+
+            page.add(new LineItem(lineItem));
+        }
+
+        String nextPageToken = page.size() == pageSize ? page.get(page.size() - 1).getId() : null;
+
+        return CompletableFuture.completedFuture(new LineItemPage(page, nextPageToken));
+    }
+
+    @Override
+    public void stream(Consumer<LineItem> consumer) {
+        for (LineItem lineItem : lineItems.values()) {
+            consumer.accept(new LineItem(lineItem));
+        }
+    }
+
+    private boolean isUnchanged(LineItem lineItem) {
+        LineItem stored = lineItems.get(lineItem.getId());
+
+        return stored != null && stored.getVersion() == lineItem.getVersion();
+    }
+
+    private LineItem write(LineItem lineItem) {
+        LineItem written = new LineItem(lineItem);
+        written.setVersion(lineItem.getVersion() + 1);
+        lineItems.put(written.getId(), written);
+
+        return new LineItem(written);
+    }
+
+    private LineItem copyOf(String itemId) {
+        LineItem lineItem = lineItems.get(itemId);
+
+        return lineItem != null ? new LineItem(lineItem) : null;
+    }
+}
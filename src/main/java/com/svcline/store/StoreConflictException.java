@@ -0,0 +1,14 @@
+package com.svcline.store;
+
+// A conditional write found the stored item changed since it was read, or an item to create already existed.
+public class StoreConflictException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public StoreConflictException(String message) {
+        super(message);
+    }
+
+    public StoreConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
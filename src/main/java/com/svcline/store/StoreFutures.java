@@ -0,0 +1,66 @@
+package com.svcline.store;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.ApiException;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+// Bridges Firestore's ApiFutures to CompletableFutures so that store calls can be composed without blocking.
+public class StoreFutures {
+    // Codes Firestore fails a write with when its precondition did not hold. NOT_FOUND comes from updating a
+    // deleted document and ABORTED from contention on the documents of a transaction.
+    private static final Set<String> CONFLICT_CODES = Set.of("ALREADY_EXISTS", "FAILED_PRECONDITION", "NOT_FOUND", "ABORTED");
+
+    private StoreFutures() {
+    }
+
+    // The callback runs on the thread completing the ApiFuture, so stages chained onto the
+    // returned future should stay short and non-blocking, or use one of the *Async variants.
+    public static <T> CompletableFuture<T> toCompletable(ApiFuture<T> apiFuture) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        ApiFutures.addCallback(apiFuture, new ApiFutureCallback<>() {
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
+            }
+
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+        }, MoreExecutors.directExecutor());
+
+        return future;
+    }
+
+    // Returns the cause of a failed stage, unwrapping the exceptions futures wrap errors in.
+    public static Throwable unwrap(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+
+        return t;
+    }
+
+    // Tells whether Firestore rejected a write because of its precondition, in whatever exception it is wrapped.
+    public static boolean isConflict(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof StoreConflictException)
+                return true;
+            else if (t instanceof FirestoreException && ((FirestoreException) t).getStatus() != null)
+                return CONFLICT_CODES.contains(((FirestoreException) t).getStatus().getCode().name());
+            else if (t instanceof ApiException)
+                return CONFLICT_CODES.contains(((ApiException) t).getStatusCode().getCode().name());
+        }
+
+        return false;
+    }
+}
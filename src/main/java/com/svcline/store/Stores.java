@@ -0,0 +1,141 @@
+package com.svcline.store;
+
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreOptions;
+import com.svcline.handlers.db.DbLineFacacde;
+import com.svcline.models.Props;
+import com.svcline.models.clocker.db.DbClockerEventFacade;
+import com.svcline.models.clocker.db.DbClockerFacade;
+import com.svcline.prodline.ProductLineConfiguration;
+import com.svcline.prodline.db.DbProdLineConfiguration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+// The stores a production line works against, selected by the "storage" property.
+public class Stores {
+    private static final Logger logger = Logger.getLogger(Stores.class.getName());
+    private static final String SERVICE_ACCOUNT = "radinn-rindus-sandbox-27eca0521d8d.json";
+    private static final String PROJECT_ID = "radinn-rindus-sandbox";
+
+    private static final String LINES = "lines";
+
+    private static volatile Firestore firestore = null;
+    private static volatile Stores memoryStores = null;
+    private static final ConcurrentHashMap<String, Stores> lineStores = new ConcurrentHashMap<>();
+
+    private final LineItemStore lineItemStore;
+    private final ClockerStore clockerStore;
+    private final ConfigurationStore configurationStore;
+
+    public Stores(LineItemStore lineItemStore, ClockerStore clockerStore, ConfigurationStore configurationStore) {
+        this.lineItemStore = lineItemStore;
+        this.clockerStore = clockerStore;
+        this.configurationStore = configurationStore;
+    }
+
+    public static Stores from(Props props) throws IOException {
+        if (props.isInMemoryStorage())
+            return inMemory(props);
+
+        Firestore db = getFirestore();
+
+        LineItemStore lineItemStore = new DbLineFacacde(db, props.isLiveEnv());
+        if (props.getItemCacheSize() > 0)
+            lineItemStore = new CachingLineItemStore(lineItemStore, props.getItemCacheSize(), props.getItemCacheTtl());
+
+        ClockerStore clockerStore = props.isClockerEventStorage() ? new DbClockerEventFacade(db, props.isLiveEnv())
+                                                                  : new DbClockerFacade(db, props.isLiveEnv());
+
+        return new Stores(lineItemStore, clockerStore, new DbProdLineConfiguration(db));
+    }
+
+    /* The stores of the line of another configuration than the default one, see LineRegistry.
+     * 1. Items and clockers of the line are kept apart from those of other lines, in Firestore under lines/{lineId}.
+     *    The configurations are shared by all lines.
+     * 2. The stores of a line are made once and kept, like the database they stand for, so its clocker queue is
+     *    the same whenever the line is opened again. The item cache is new with every call, and goes with the line.
+     */
+    public static Stores forLine(Props props, String lineId) throws IOException {
+        Stores stores = lineStores.get(lineId);
+        if (stores == null) {
+            Stores created;
+            if (props.isInMemoryStorage()) {
+                created = new Stores(new MemLineItemStore(), new MemClockerStore(), inMemory(props).getConfigurationStore());
+            } else {
+                Firestore db = getFirestore();
+                ClockerStore clockerStore = props.isClockerEventStorage() ? new DbClockerEventFacade(db, props.isLiveEnv(), lineId)
+                                                                          : new DbClockerFacade(db, props.isLiveEnv(), lineId);
+                created = new Stores(new DbLineFacacde(db, props.isLiveEnv(), lineId), clockerStore, new DbProdLineConfiguration(db));
+            }
+
+            Stores raced = lineStores.putIfAbsent(lineId, created);
+            stores = raced != null ? raced : created;
+        }
+
+        LineItemStore lineItemStore = stores.getLineItemStore();
+        if (props.getItemCacheSize() > 0)
+            lineItemStore = new CachingLineItemStore(lineItemStore, props.getItemCacheSize(), props.getItemCacheTtl());
+
+        return new Stores(lineItemStore, stores.getClockerStore(), stores.getConfigurationStore());
+    }
+
+    // The collection of a line, the collection itself for the default line which has no id.
+    public static String collectionOf(String collection, String lineId) {
+        return lineId == null ? collection : LINES + "/" + lineId + "/" + collection;
+    }
+
+    // Memory stores are shared by everything in the JVM, like the database would be. The configuration store
+    // starts out with the test configuration under the configured id, so the line can boot without a database.
+    private static synchronized Stores inMemory(Props props) throws IOException {
+        if (memoryStores == null) {
+            logger.info("Using in-memory storage. Nothing will be persisted.");
+
+            MemConfigurationStore configurationStore = new MemConfigurationStore();
+            ProductLineConfiguration testConfiguration = new ProductLineConfiguration(configurationStore);
+            testConfiguration.loadTestConfiguration();
+            configurationStore.write(props.getCurrentlyLoadedConfiguration(), testConfiguration);
+
+            memoryStores = new Stores(new MemLineItemStore(), new MemClockerStore(), configurationStore);
+        }
+
+        return memoryStores;
+    }
+
+    public static synchronized Firestore getFirestore() throws IOException {
+        if (firestore == null) {
+            InputStream serviceAccount = Stores.class.getClassLoader().getResourceAsStream(SERVICE_ACCOUNT);
+
+            assert serviceAccount != null;
+            FirestoreOptions firestoreOptions =
+                    FirestoreOptions.getDefaultInstance().toBuilder()
+                            .setProjectId(PROJECT_ID)
+                            .setCredentials(GoogleCredentials.fromStream(serviceAccount))
+                            .build();
+
+            firestore = firestoreOptions.getService();
+        }
+
+        return firestore;
+    }
+
+    public LineItemStore getLineItemStore() {
+        return lineItemStore;
+    }
+
+    // Returns null if line items are not cached.
+    public CachingLineItemStore getLineItemCache() {
+        return lineItemStore instanceof CachingLineItemStore ? (CachingLineItemStore) lineItemStore : null;
+    }
+
+    public ClockerStore getClockerStore() {
+        return clockerStore;
+    }
+
+    public ConfigurationStore getConfigurationStore() {
+        return configurationStore;
+    }
+}
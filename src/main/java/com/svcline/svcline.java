@@ -8,32 +8,57 @@ import com.routler.RContext;
 import com.routler.RError;
 import com.routler.RResponse;
 import com.routler.Routler;
+import com.svcline.handlers.BatchLineHandler;
 import com.svcline.handlers.ConfigurationHandler;
 import com.svcline.handlers.LineHandler;
-import com.svcline.models.Props;
-import com.svcline.prodline.ProductLineConfiguration;
+import com.svcline.handlers.LineScopedHandler;
+import com.svcline.handlers.LineStatusHandler;
+import com.svcline.handlers.MetricsHandler;
+import com.svcline.prodline.ConfigurationReloader;
+import com.svcline.prodline.LineRegistry;
 import com.svcline.prodline.ProductionLine;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
-import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Logger;
 
+import static com.svcline.store.StoreFutures.unwrap;
+
 public class svcline implements HttpFunction {
     private static final Logger logger = Logger.getLogger(svcline.class.getName());
-    private static ProductionLine productionLine = null;
+    private static volatile ProductionLine productionLine = null;
+    private static volatile LineRegistry lineRegistry = null;
+    private static CompletableFuture<ProductionLine> startup;
     private static final Gson gson = new Gson();
 
     private static final String CONTENT_TYPE = "application/json;charset=utf-8";
 
     private static final String PATH_CONFIGURATION = "/configurations/{configId}";
     private static final String PATH_PRODUCTION_LINE = "/items/{itemId}";
-
-    // Register our path with handlers
+    private static final String PATH_PRODUCTION_LINE_BATCH = "/items:batch";
+    private static final String PATH_METRICS = "/metrics/{metricId}";
+    private static final String PATH_LINE_STATUS = "/line/{viewId}";
+    private static final String PATH_LINES_ITEMS = "/lines/{lineId}/items/{itemId}";
+    private static final String PATH_LINES_ITEMS_BATCH = "/lines/{lineId}/items:batch";
+    private static final String PATH_LINES_STATUS = "/lines/{lineId}/line/{viewId}";
+    private static final String PATH_LINES_METRICS = "/lines/{lineId}/metrics/{metricId}";
+
+    // Register our path with handlers, and bring the line up while the instance waits for its first request
     static {
         Routler.register(PATH_CONFIGURATION, new ConfigurationHandler());
         Routler.register(PATH_PRODUCTION_LINE, new LineHandler());
+        Routler.register(PATH_PRODUCTION_LINE_BATCH, new BatchLineHandler());
+        Routler.register(PATH_METRICS, new MetricsHandler());
+        Routler.register(PATH_LINE_STATUS, new LineStatusHandler());
+        Routler.register(PATH_LINES_ITEMS, new LineScopedHandler.Items());
+        Routler.register(PATH_LINES_ITEMS_BATCH, new LineScopedHandler.Batch());
+        Routler.register(PATH_LINES_STATUS, new LineScopedHandler.Status());
+        Routler.register(PATH_LINES_METRICS, new LineScopedHandler.Metrics());
+
+        startup = LineStartup.begin();
     }
 
     @Override
@@ -51,64 +76,66 @@ public class svcline implements HttpFunction {
 
         // Since we can return the response, now we initiate the system and gracefully exit if it fails.
         try {
-            initProductionLine();
-        } catch (InstantiationException | IOException e) {
+            if (productionLine == null)
+                initProductionLine();
+        } catch (InstantiationException e) {
             e.printStackTrace();
             response.setStatusCode(HttpURLConnection.HTTP_INTERNAL_ERROR);
             try {
-                os.write(bytes(gson.toJson(new RError("Production line initialization failed. Application will not start."))));
+                new RResponse(new RError("Production line initialization failed. Application will not start.")).writeTo(os);
             } catch (IOException ex) {
                 ex.printStackTrace();
             }
             return;
         }
 
-        RContext RContext = new RContext(productionLine);
+        // The request keeps the configuration it started with, see ProductionLine.pinned
+        RContext context = new RContext(productionLine.pinned(), lineRegistry);
         // We came so far, now handle the request
-        RResponse rResponse = Routler.handle(request, response, RContext);
+        RResponse rResponse = Routler.handle(request, response, context);
 
-        // Attempt returning the actual response
+        // Attempt returning the actual response, serialized straight into the output stream
         try {
             if (rResponse != null) {
                 response.setStatusCode(rResponse.getCode());
-                os.write(bytes(rResponse.getJson()));
+                if (rResponse.getContentType() != null)
+                    response.setContentType(rResponse.getContentType());
+                rResponse.writeTo(os);
             } else {
                 response.setStatusCode(HttpURLConnection.HTTP_INTERNAL_ERROR);
-                os.write(bytes(gson.toJson(new RError("Unexpected error while handling request."))));
+                new RResponse(new RError("Unexpected error while handling request.")).writeTo(os);
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private void initProductionLine() throws InstantiationException, IOException {
+    // Waits for the startup begun when the class loaded. If it failed, the next request starts it over.
+    private static synchronized void initProductionLine() throws InstantiationException {
         if (productionLine == null) {
-            productionLine = new ProductionLine();
-            Props props = new Props();
-            //currentlyLoadedConfiguration = PRODUCT_CONFIGURATION1;
-
-            ProductLineConfiguration productLineConfiguration = new ProductLineConfiguration(productionLine.getFirestore());
-            productLineConfiguration.loadFromDb(props.getCurrentlyLoadedConfiguration());
-
-            /*ProductLineConfiguration productLineConfiguration = new  ProductLineConfiguration();
-            productLineConfiguration.loadTestConfiguration();
-            productLineConfiguration.writeToDb(currentlyLoadedConfiguration);*/
-
-            productionLine.init(productLineConfiguration, props);
+            try {
+                ProductionLine started = startup.join();
+                svcline.lineRegistry = new LineRegistry(started);
+                svcline.productionLine = started;
+            } catch (CompletionException e) {
+                startup = LineStartup.begin();
+
+                Throwable cause = unwrap(e);
+                InstantiationException ie = new InstantiationException("Production line startup failed: " + cause.getMessage());
+                ie.initCause(cause);
+                throw ie;
+            }
         }
     }
 
+    // Switches the line to the configuration in the store, see ConfigurationReloader.
     public static void reloadProductionLineConfiguration() {
-        ProductLineConfiguration cfg;
-        try {
-            cfg = new ProductLineConfiguration(productionLine.getFirestore());
-            cfg.loadFromDb(productionLine.getProps().getCurrentlyLoadedConfiguration());
+        ProductionLine line = productionLine;
+        if (line == null)
+            return;
 
-            productionLine.init(cfg, productionLine.getProps());
-            logger.info("Production line setup:\n" + gson.toJson(cfg));
-        } catch (InstantiationException | IOException e) {
-            e.printStackTrace();
-        }
+        if (new ConfigurationReloader(line, line.getProps(), line.getStores()).reload())
+            logger.info("Production line setup:\n" + gson.toJson(line.getProductLineConfiguration()));
     }
 
     /*private Props loadProperties() throws IOException {
@@ -133,8 +160,4 @@ public class svcline implements HttpFunction {
     public static ProductionLine getProductionLine() {
         return productionLine;
     }
-
-    private static byte[] bytes(String str) {
-        return str != null ? str.getBytes(StandardCharsets.UTF_8) : "".getBytes(StandardCharsets.UTF_8);
-    }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.svcline.LineService;
 import com.svcline.models.*;
 import com.svcline.models.clocker.bq.BigQueryService;
 import com.svcline.prodline.*;
+import com.svcline.store.Stores;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -74,7 +75,7 @@ public class Test {
 
         ProductionLine productionLine;
         try {
-            productionLine = new ProductionLine();
+            productionLine = new ProductionLine(Stores.from(props));
             productionLine.init(productLineConfiguration, props);
         } catch (InstantiationException | IOException e) {
             e.printStackTrace();
@@ -94,35 +95,35 @@ public class Test {
             Transition fourth = new Transition(itemId, station4.getId(), State.PASSED);
             Transition end = new Transition(itemId, station5.getId(), State.PASSED);
 
-            run(lineService.startProduction(create), true);
-            run(lineService.stationItemStop(create), true);
+            run(lineService.startProduction(create).join(), true);
+            run(lineService.stationItemStop(create).join(), true);
 
-            run(lineService.stationItemStart(second), true);
-            run(lineService.stationItemStop(second), true);
+            run(lineService.stationItemStart(second).join(), true);
+            run(lineService.stationItemStop(second).join(), true);
 
-            run(lineService.stationItemStart(third), true);
-            run(lineService.stationItemStop(third), true);
+            run(lineService.stationItemStart(third).join(), true);
+            run(lineService.stationItemStop(third).join(), true);
 
-            run(lineService.stationItemStart(fourth), true);
-            run(lineService.stationItemStop(fourth), true);
+            run(lineService.stationItemStart(fourth).join(), true);
+            run(lineService.stationItemStop(fourth).join(), true);
 
-            run(lineService.stationItemStart(end), true);
-            run(lineService.stationItemStop(end), true);
+            run(lineService.stationItemStart(end).join(), true);
+            run(lineService.stationItemStop(end).join(), true);
 
-            //run(lineService.deleteLineEntryForItem(itemId), true);
+            //run(lineService.deleteLineEntryForItem(itemId).join(), true);
         }
 
         {
             Transition create = new Transition("100001", station1.getId(), State.PASSED);
-            run(lineService.startProduction(create), false);
-            run(lineService.stationItemStart(create), false);
+            run(lineService.startProduction(create).join(), false);
+            run(lineService.stationItemStart(create).join(), false);
 
             Transition transition = new Transition("200001", station1.getId(), State.PASSED);
-            run(lineService.stationItemStart(create), false);
+            run(lineService.stationItemStart(create).join(), false);
 
             Transition transition1 = new Transition("300001", station1.getId(), State.RETRIED);
-            run(lineService.startProduction(transition1), true);
-            run(lineService.stationItemStart(transition1), true);
+            run(lineService.startProduction(transition1).join(), true);
+            run(lineService.stationItemStart(transition1).join(), true);
 
         }
     }